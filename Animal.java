@@ -1,7 +1,5 @@
-import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
-import java.util.stream.Collectors;
+import java.util.random.RandomGenerator;
 
 /**
  * A Class defining all common characteristics of animals in the simulation
@@ -11,14 +9,21 @@ import java.util.stream.Collectors;
  */
 public abstract class Animal extends Entity
 {
-    //The foodLevel of the animal.
-    protected int foodLevel;
-    //The animal's gender 0 if female, 1 if male.
-    private final int sex;
-    // A boolean that stores the infection state of the animal.
-    private boolean isInfected;
-    //A random Number shared amongst all animals.
-    private static final Random rand = Randomizer.getRandom();
+    // The age, food level, sex and infection state of the animals are kept
+    // in the AnimalTable of the simulation.
+    // The table of the animals of the simulation.
+    private final AnimalTable table;
+    // The slot of the animal in the table, and the chunk holding it.
+    private final int slot;
+    private final AnimalTable.Chunk chunk;
+    // Whether the animal slept through its last act without carrying the disease.
+    private boolean drowsy;
+    // Buffers receiving the cells adjacent to the acting animal, one per thread
+    // so that animals in different parts of the field can act concurrently.
+    private static final ThreadLocal<int[]> buffers =
+            ThreadLocal.withInitial(() -> new int[Field.MAX_NEIGHBOURS]);
+    // The private methods that HotPathBenchmark can call through callHotPath.
+    static final int GET_SEX = 0, FIND_FOOD = 1, CHECK_FOR_ADJACENT_MALES = 2, SPREAD_DISEASE = 3;
 
     /**
      * Create a new animal at location in field.
@@ -29,33 +34,37 @@ public abstract class Animal extends Entity
     public Animal(Field field, Location location)
     {
         super(field,location);
-        foodLevel = 30;
-        sex = rand.nextInt(2);
+        table = getContext().getAnimals();
+        slot = table.allocate(this, getContext().getRandom().nextInt(2) == 1);
+        chunk = table.getChunk(slot);
+        setFoodLevel(30);
         randomlyInfect();
     }
 
     /**
      * This is what an animal doe most of the time: it looks for food.
-     * In the process, it might breed, die of hunger, die of old age or
-     * randomly contract a disease and die from it.
+     * In the process, it might breed or spread the disease. Animals age,
+     * get hungry and die of hunger, old age or the disease all at once
+     * at the start of the step.
      * @param newAnimals A list to return newly born animals.
      */
     public void act(List<Entity> newAnimals) {
-        incrementAge();
         spreadDisease();
-        incrementHunger();
         // Stores the next location of the animal.
         Location newLocation = null;
         // the animal can find food and give birth only if it is alive and awake.
-        if (isAlive() && animalAwake(getIS_NOCTURNAL())) {
+        boolean awake = isAlive() && animalAwake();
+        // A sleeping animal that is not infected does nothing at all.
+        drowsy = !awake && isAlive() && !isInfected();
+        if (awake) {
             // Only the females may give birth
-            if (sex == 0) {
+            if (!AnimalTable.isMale(chunk, slot)) {
                 giveBirth(newAnimals);
             }
             // Predators don't act when the weather is foggy.
-            if (!(Simulator.weather.isFoggy() && getVISIBILITY_REQUIRED())) {
+            if (!(getContext().getWeather().isFoggy() && table.isVisibilityRequired(getSpecies()))) {
                 // The animal can hunt only when it is hungry
-                if(foodLevel < getMAX_FOOD_LEVEL()){
+                if(getFoodLevel() < table.getMaxFoodLevel(getSpecies())){
                     // Move towards a source of food if found.
                     newLocation = findFood();
                 }
@@ -74,6 +83,101 @@ public abstract class Animal extends Entity
         }
     }
 
+    /**
+     * @return true if the animal slept through its last act without
+     * carrying the disease, so that its next acts can be skipped for as
+     * long as it sleeps.
+     */
+    protected boolean isDrowsy()
+    {
+        return drowsy;
+    }
+
+    /**
+     * Skip the acts of a sleeping animal from the next step on. A
+     * sleeping animal that is not infected does nothing but age and get
+     * hungry, which the table does for every animal.
+     */
+    protected void deferSleep()
+    {
+        drowsy = false;
+    }
+
+    /**
+     * Check, at the start of a step, whether a sleeper whose acts are
+     * skipped sleeps through the step.
+     * @return true if the animal is still asleep and healthy, false if it
+     * must act normally again or is dead.
+     */
+    protected boolean sleepThrough()
+    {
+        return isAlive() && !isInfected() && !animalAwake();
+    }
+
+    /**
+     * Schedule the death of old age of the animal, at the step at which
+     * its age would exceed its maximum age. An animal infected at birth
+     * has the age that leaves it as many steps to live as the virulence.
+     */
+    protected void scheduleDeath()
+    {
+        SimulationContext context = getContext();
+        context.getDeaths().schedule(this, context.getStep() + table.getMaxAge(getSpecies()) - getAge() + 1);
+    }
+
+    /**
+     * Indicate that the animal is no longer alive, and free its slot.
+     */
+    protected void setDead()
+    {
+        if(isAlive()) {
+            table.release(slot);
+        }
+        super.setDead();
+    }
+
+    /**
+     * Let the animal die of hunger. Called by the table once the food
+     * level of the animal has dropped to zero.
+     */
+    protected void starve()
+    {
+        SimulationEvents.starvation(getSpecies(), getAge());
+        setDead();
+    }
+
+    /**
+     * @return The age of the animal.
+     */
+    protected int getAge()
+    {
+        return AnimalTable.getAge(chunk, slot);
+    }
+
+    /**
+     * @param age The new age of the animal.
+     */
+    protected void setAge(int age)
+    {
+        AnimalTable.setAge(chunk, slot, age);
+    }
+
+    /**
+     * @return The food level of the animal.
+     */
+    protected int getFoodLevel()
+    {
+        return AnimalTable.getFoodLevel(chunk, slot);
+    }
+
+    /**
+     * @param foodLevel The new food level of the animal.
+     */
+    protected void setFoodLevel(int foodLevel)
+    {
+        AnimalTable.setFoodLevel(chunk, slot, foodLevel);
+    }
+
     /**
      * Check whether or not this animal is to give birth at this step.
      * New births will be made into free adjacent locations.
@@ -81,14 +185,20 @@ public abstract class Animal extends Entity
      */
     protected void giveBirth(List<Entity> newAnimals)
     {
-        Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
         //Get the number of new animals to add to the field.
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location location = free.remove(0);
-            Animal newBorn = newAnimalObject(field, location);
-            newAnimals.add(newBorn);
+        if(births > 0) {
+            Field field = getField();
+            int[] neighbours = buffers.get();
+            int free = field.freeAdjacentCells(getCell(), neighbours);
+            int born = Math.min(births, free);
+            for(int b = 0; b < born; b++) {
+                Animal newBorn = newAnimalObject(field, field.getLocation(neighbours[b]));
+                newAnimals.add(newBorn);
+            }
+            if(born > 0) {
+                SimulationEvents.birth(getSpecies(), born);
+            }
         }
     }
 
@@ -100,8 +210,9 @@ public abstract class Animal extends Entity
     protected int breed()
     {
         int births = 0;
-        if(canBreed() && rand.nextDouble() <= getBREEDING_PROBABILITY()) {
-            births = rand.nextInt(getMAX_LITTER_SIZE()) + 1;
+        RandomGenerator rand = getContext().getRandom();
+        if(canBreed() && rand.nextDouble() <= table.getBreedingProbability(getSpecies())) {
+            births = rand.nextInt(table.getMaxLitterSize(getSpecies())) + 1;
         }
         return births;
     }
@@ -112,7 +223,7 @@ public abstract class Animal extends Entity
      */
     private boolean canBreed()
     {
-        return checkForAdjacentMales(getLocation()) && (age >= getBREEDING_AGE());
+        return (getAge() >= table.getBreedingAge(getSpecies())) && checkForAdjacentMales(getLocation());
     }
 
      /**
@@ -123,32 +234,29 @@ public abstract class Animal extends Entity
     private boolean checkForAdjacentMales(Location location) {
 
         Field field = getField();
-        // Get a list of adjacent locations.
-        List<Location> adjacentLocations = field.adjacentAnimals(location);
+        int[] neighbours = buffers.get();
+        // Get the adjacent cells that contain an animal.
+        int count = field.adjacentAnimalCells(field.getCell(location), neighbours);
         // Get the animal at the current location.
         Entity female = (Entity) field.getObjectAt(location);
-
-            // Get a list of adjacent male animals of the same specie.
-            List<Animal> adjacentMaleAnimals =
-
-                    adjacentLocations.stream()
-                            // Filters only the animals of the same specie
-                            .filter(locations -> field.getObjectAt(locations).getClass().equals(female.getClass()))
-                            // Maps, respectively, to a new list of Animal's objects
-                            .map(object -> (Animal) field.getObjectAt(object))
-                            // Filters the males
-                            .filter(animal -> animal.getSex() == 1).collect(Collectors.toList());
-
-            return !adjacentMaleAnimals.isEmpty();
+        for(int i = 0; i < count; i++) {
+            Animal animal = (Animal) field.getObjectAt(neighbours[i]);
+            // Look for a male of the same specie.
+            if(animal.getClass() == female.getClass() && AnimalTable.isMale(animal.chunk, animal.slot)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
      * A method that checks whether or not an animal is asleep.
-     * @param isNocturnal The lifestyle of the animal.
      * @return true if the animal is awake.
      */
-    private boolean animalAwake(boolean isNocturnal) {
-        return (isNocturnal && !Simulator.time.isDay()) || (!isNocturnal && Simulator.time.isDay());
+    private boolean animalAwake() {
+        boolean isNocturnal = table.isNocturnal(getSpecies());
+        boolean isDay = getContext().getTime().isDay();
+        return (isNocturnal && !isDay) || (!isNocturnal && isDay);
     }
 
     /**
@@ -158,17 +266,21 @@ public abstract class Animal extends Entity
     private Location findFood()
     {
         Field field = getField();
-        // Create a list of adjacent locations.
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-         for (Location location : adjacent) {
-            Object prey = field.getObjectAt(location);
-            if(prey != null){
-                String targetBreed = prey.getClass().getName();
-                // Check if it is in the diet of the animal.
-                if(Arrays.stream(getPreys()).toList().contains(targetBreed)){
+        int[] neighbours = buffers.get();
+        // Get the adjacent cells.
+        int count = field.adjacentCells(getCell(), neighbours);
+        for(int i = 0; i < count; i++) {
+            // Check if the occupant is in the diet of the animal.
+            if(Species.eats(getSpecies(), field.getSpeciesAt(neighbours[i]))){
+                Object prey = field.getObjectAt(neighbours[i]);
+                if(prey == null) {
+                    // Grass of a GrassLayer, which has no object.
+                    graze(neighbours[i]);
+                }
+                else {
                     kill((Entity) prey);
-                    return location;
                 }
+                return field.getLocation(neighbours[i]);
             }
         }
         return null;
@@ -180,33 +292,50 @@ public abstract class Animal extends Entity
      */
     protected void kill(Entity prey)
     {
-        if(this instanceof Predator && prey instanceof Grass){
+        int foodGained = 0;
+        if(this instanceof Predator && !Species.isAnimal(prey.getSpecies())){
             // Do nothing. Predators are allowed to step over grass and thus kill it.
             // However, they don't eat plants so their food level isn't updated.
         }else{
             //Add the food value of the species that has just been eaten to the animal's foodLevel
-            foodLevel += prey.getFOOD_VALUE();
+            foodGained = prey.getFOOD_VALUE();
+            setFoodLevel(getFoodLevel() + foodGained);
         }
+        SimulationEvents.kill(getSpecies(), prey.getSpecies(), foodGained);
         prey.setDead();
     }
 
+    /**
+     * Eat the grass of a GrassLayer in the given cell, as kill does for
+     * a Grass object.
+     * @param cell The cell of the grass.
+     */
+    protected void graze(int cell)
+    {
+        int foodGained = 0;
+        if(!(this instanceof Predator)) {
+            foodGained = GrassLayer.FOOD_VALUE;
+            setFoodLevel(getFoodLevel() + foodGained);
+        }
+        Field field = getField();
+        SimulationEvents.kill(getSpecies(), field.getSpeciesAt(cell), foodGained);
+        field.clear(cell);
+    }
+
     /**
      * @return The animal's gender
      */
     private int getSex()
     {
-        return sex;
+        return AnimalTable.isMale(chunk, slot) ? 1 : 0;
     }
 
     /**
-     * Increment hunger of the animal by one.
+     * @return true if the animal carries the disease.
      */
-    private void incrementHunger()
+    protected boolean isInfected()
     {
-        foodLevel--;
-        if(foodLevel <= 0) {
-            setDead();
-        }
+        return AnimalTable.isInfected(chunk, slot);
     }
 
     /**
@@ -214,11 +343,11 @@ public abstract class Animal extends Entity
      * to live depending on the virulence of the disease.
      */
     private void randomlyInfect() {
-        if(rand.nextDouble() <= getDISEASE_INFECTION_RATE()){
-            isInfected = true;
+        if(getContext().getRandom().nextDouble() <= getDISEASE_INFECTION_RATE()){
+            AnimalTable.setInfected(chunk, slot);
             // Leave the animal with a certain amount of steps left to live, depending on the virulence
             // of the disease.
-            this.age = this.getMAX_AGE() - Simulator.disease.getVirulence();
+            setAge(table.getMaxAge(getSpecies()) - getContext().getDisease().getVirulence());
         }
     }
 
@@ -227,30 +356,57 @@ public abstract class Animal extends Entity
      */
     private void spreadDisease(){
         // Animal can only spread infection when it is infected and alive.
-        if(isAlive() && isInfected){
+        if(isAlive() && isInfected()){
             Field field = getField();
-            List<Location> adjacentLocations  = field.adjacentAnimals(getLocation());
-            adjacentLocations.stream()
-                    // Get a stream of the adjacent animals objects
-                    .map(location -> (Animal) field.getObjectAt(location))
-                    // An animal can spread the virus only with other animals of the same specie.
-                    .filter(animal -> animal.getClass().equals(this.getClass()))
-                    // Infect adjacent animals
-                    .forEach(animal -> {
-                        // Depending on the virality of the virus, its contraction by other animals is not systematic
-                        if(rand.nextDouble() <= Simulator.disease.getVirality()){
-                            animal.isInfected = true;
-                            // Leave the animal with a certain amount of steps left to live, depending on the virulence
-                            // of the disease.
-                            if(animal.getMAX_AGE() - Simulator.disease.getVirulence() > animal.age){
-                                animal.age = animal.getMAX_AGE() - Simulator.disease.getVirulence();
-                            }else{
-                                //If the animal is already very old, he dies because of the weakness of his immune system.
-                                animal.setDead();
-                            }
-                            Simulator.disease.incrementDeath();
-                        }
-                    });
+            RandomGenerator rand = getContext().getRandom();
+            Disease disease = getContext().getDisease();
+            int[] neighbours = buffers.get();
+            int count = field.adjacentAnimalCells(getCell(), neighbours);
+            for(int i = 0; i < count; i++) {
+                Animal animal = (Animal) field.getObjectAt(neighbours[i]);
+                // An animal can spread the virus only with other animals of the same specie.
+                // Depending on the virality of the virus, its contraction by other animals is not systematic
+                if(animal.getClass() == getClass() && rand.nextDouble() <= disease.getVirality()){
+                    AnimalTable.setInfected(animal.chunk, animal.slot);
+                    // Leave the animal with a certain amount of steps left to live, depending on the virulence
+                    // of the disease.
+                    int age = animal.getAge();
+                    int maxAge = table.getMaxAge(animal.getSpecies());
+                    boolean immediate = maxAge - disease.getVirulence() <= age;
+                    if(!immediate){
+                        animal.setAge(maxAge - disease.getVirulence());
+                        getContext().getDeaths().schedule(animal, getContext().getStep() + disease.getVirulence() + 1);
+                    }else{
+                        //If the animal is already very old, he dies because of the weakness of his immune system.
+                        animal.setDead();
+                    }
+                    disease.incrementDeath();
+                    SimulationEvents.diseaseDeath(animal.getSpecies(), age, immediate);
+                }
+            }
+        }
+    }
+
+    /**
+     * Call one of the private methods of the hot path, so that
+     * HotPathBenchmark can time it.
+     * @param method GET_SEX, FIND_FOOD, CHECK_FOR_ADJACENT_MALES or SPREAD_DISEASE.
+     * @return A value depending on the result of the call.
+     */
+    int callHotPath(int method)
+    {
+        switch(method) {
+            case GET_SEX:
+                return getSex();
+            case FIND_FOOD:
+                return findFood() == null ? 0 : 1;
+            case CHECK_FOR_ADJACENT_MALES:
+                return checkForAdjacentMales(getLocation()) ? 1 : 0;
+            case SPREAD_DISEASE:
+                spreadDisease();
+                return isAlive() ? 1 : 0;
+            default:
+                throw new IllegalArgumentException("Unknown method: " + method);
         }
     }
 
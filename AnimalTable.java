@@ -0,0 +1,468 @@
+import java.util.Arrays;
+
+/**
+ * Keep the state of the animals of a simulation in parallel arrays of
+ * primitives, one slot per animal, rather than in the fields of each
+ * Animal object: the age, the food level, and flags for being alive,
+ * male and infected. The constants of each species are kept in tables
+ * indexed by species code, with the overridden parameters applied.
+ *
+ * Ageing and hunger are then a single pass over the arrays at the start
+ * of each step, which the compiler can turn into vector instructions;
+ * only the animals that starve are visited one by one.
+ *
+ * The slots are kept in chunks that are never moved, so the animals of
+ * different tiles can be updated concurrently while others are born.
+ * The slot of a dead animal is only reused from the next step on.
+ *
+ * The threads acting for the tiles of a TiledStepper each have a reserve
+ * bound to them: free slots are handed to a reserve in batches, so that
+ * only a batch takes the lock of the table rather than each birth, and
+ * the slots released are kept in the reserve until it is merged into the
+ * table. Outside of the tiles, slots are given and released by the
+ * thread of the simulation alone.
+ *
+ * @author Aymen Berbache and Aleks
+ * @version 2022.02
+ */
+public class AnimalTable
+{
+    // The flags of a slot.
+    private static final byte LIVE = 1, MALE = 2, INFECTED = 4;
+    // The number of bits of a slot giving its index in its chunk.
+    private static final int CHUNK_BITS = 12;
+    // The number of slots of a chunk.
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    // The number of free slots handed to a reserve at once.
+    private static final int BATCH_SIZE = 64;
+
+    /**
+     * The state of CHUNK_SIZE animals, by index in the chunk.
+     */
+    public static class Chunk
+    {
+        // The age of each animal.
+        private final int[] ages = new int[CHUNK_SIZE];
+        // The food level of each animal.
+        private final short[] foods = new short[CHUNK_SIZE];
+        // The flags of each animal.
+        private final byte[] flags = new byte[CHUNK_SIZE];
+        // The animal of each slot, so that it can be told when it starves.
+        private final Animal[] owners = new Animal[CHUNK_SIZE];
+    }
+
+    /**
+     * The slots given and released by one thread while the animals of a
+     * tile act. A reserve is merged into the table once the thread is done.
+     */
+    public static class Reserve
+    {
+        // The free slots handed to the thread, given from the end.
+        private final int[] free = new int[BATCH_SIZE];
+        private int freeCount;
+        // The slots of the animals that died.
+        private int[] released = new int[BATCH_SIZE];
+        private int releasedCount;
+    }
+
+    // The simulation the animals belong to.
+    private final SimulationContext context;
+    // The chunks of slots, filled in order.
+    private volatile Chunk[] chunks;
+    // The number of slots ever used.
+    private int used;
+    // The slots free for reuse.
+    private int[] free;
+    private int freeCount;
+    // The slots of the animals that died during the current step.
+    private int[] released;
+    private int releasedCount;
+    // The reserve bound to each thread.
+    private final ThreadLocal<Reserve> reserves = new ThreadLocal<>();
+
+    // The constants of each species, by species code, with the parameters applied.
+    private final boolean[] described;
+    private final int[] maxAges;
+    private final int[] maxFoodLevels;
+    private final int[] breedingAges;
+    private final double[] breedingProbabilities;
+    private final int[] maxLitterSizes;
+    private final boolean[] nocturnal;
+    private final boolean[] visibilityRequired;
+
+    /**
+     * Create an empty table for the given simulation.
+     * @param context The simulation the animals belong to.
+     */
+    public AnimalTable(SimulationContext context)
+    {
+        this.context = context;
+        chunks = new Chunk[0];
+        free = new int[CHUNK_SIZE];
+        released = new int[CHUNK_SIZE];
+        int species = Species.MAX_SPECIES + 1;
+        described = new boolean[species];
+        maxAges = new int[species];
+        maxFoodLevels = new int[species];
+        breedingAges = new int[species];
+        breedingProbabilities = new double[species];
+        maxLitterSizes = new int[species];
+        nocturnal = new boolean[species];
+        visibilityRequired = new boolean[species];
+    }
+
+    /**
+     * Free every slot. The animals in the table must be discarded.
+     */
+    public void clear()
+    {
+        for(Chunk chunk : chunks) {
+            Arrays.fill(chunk.flags, (byte) 0);
+            Arrays.fill(chunk.owners, null);
+        }
+        used = 0;
+        freeCount = 0;
+        releasedCount = 0;
+    }
+
+    /**
+     * Give a slot to a new animal: alive, not infected, of age zero and
+     * with no food. The constants of its species are recorded if it is
+     * the first animal of its species.
+     * @param animal The new animal.
+     * @param male Whether the animal is male.
+     * @return The slot of the animal.
+     */
+    public int allocate(Animal animal, boolean male)
+    {
+        int species = animal.getSpecies();
+        if(!described[species]) {
+            describe(animal);
+        }
+        Reserve reserve = reserves.get();
+        int slot;
+        if(reserve == null) {
+            slot = takeSlot();
+        }
+        else {
+            if(reserve.freeCount == 0) {
+                refill(reserve);
+            }
+            slot = reserve.free[--reserve.freeCount];
+        }
+        Chunk chunk = getChunk(slot);
+        int index = slot & (CHUNK_SIZE - 1);
+        chunk.ages[index] = 0;
+        chunk.foods[index] = 0;
+        chunk.flags[index] = male ? (byte) (LIVE | MALE) : LIVE;
+        chunk.owners[index] = animal;
+        return slot;
+    }
+
+    /**
+     * Release the slot of an animal that died. The slot is reused from
+     * the next step on.
+     * @param slot The slot of the animal.
+     */
+    public void release(int slot)
+    {
+        Chunk chunk = getChunk(slot);
+        int index = slot & (CHUNK_SIZE - 1);
+        chunk.flags[index] = 0;
+        chunk.owners[index] = null;
+        Reserve reserve = reserves.get();
+        if(reserve == null) {
+            if(releasedCount == released.length) {
+                released = Arrays.copyOf(released, releasedCount * 2);
+            }
+            released[releasedCount++] = slot;
+        }
+        else {
+            if(reserve.releasedCount == reserve.released.length) {
+                reserve.released = Arrays.copyOf(reserve.released, reserve.releasedCount * 2);
+            }
+            reserve.released[reserve.releasedCount++] = slot;
+        }
+    }
+
+    /**
+     * Bind a reserve to the current thread, to give and release the slots
+     * of the animals of a tile.
+     * @param reserve The reserve to bind, or null to unbind.
+     * @return The reserve previously bound, or null if there was none.
+     */
+    public Reserve bindReserve(Reserve reserve)
+    {
+        Reserve previous = reserves.get();
+        if(reserve == null) {
+            reserves.remove();
+        }
+        else {
+            reserves.set(reserve);
+        }
+        return previous;
+    }
+
+    /**
+     * Give back the free slots of a reserve, add the slots it released to
+     * those released during the step, and empty the reserve. Must not be
+     * called concurrently.
+     * @param reserve The reserve to merge.
+     */
+    public void merge(Reserve reserve)
+    {
+        if(freeCount + reserve.freeCount > free.length) {
+            free = Arrays.copyOf(free, Math.max(free.length * 2, freeCount + reserve.freeCount));
+        }
+        // Give back the slots so that they are taken again in the same order.
+        for(int i = 0; i < reserve.freeCount; i++) {
+            free[freeCount++] = reserve.free[i];
+        }
+        reserve.freeCount = 0;
+        if(releasedCount + reserve.releasedCount > released.length) {
+            released = Arrays.copyOf(released, Math.max(released.length * 2, releasedCount + reserve.releasedCount));
+        }
+        System.arraycopy(reserve.released, 0, released, releasedCount, reserve.releasedCount);
+        releasedCount += reserve.releasedCount;
+        reserve.releasedCount = 0;
+    }
+
+    /**
+     * Hand a batch of free slots to an empty reserve.
+     * @param reserve The reserve.
+     */
+    private synchronized void refill(Reserve reserve)
+    {
+        // The slot taken first is given first.
+        for(int i = BATCH_SIZE - 1; i >= 0; i--) {
+            reserve.free[i] = takeSlot();
+        }
+        reserve.freeCount = BATCH_SIZE;
+    }
+
+    /**
+     * Take a free slot, or a new one if there is none.
+     * @return The slot.
+     */
+    private int takeSlot()
+    {
+        if(freeCount > 0) {
+            return free[--freeCount];
+        }
+        int slot = used++;
+        if((slot >>> CHUNK_BITS) == chunks.length) {
+            Chunk[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+            grown[chunks.length] = new Chunk();
+            chunks = grown;
+        }
+        return slot;
+    }
+
+    /**
+     * Let every animal age and grow hungrier by one step, then let those
+     * with no food left starve. Called at the start of each step, before
+     * any animal acts.
+     */
+    public void ageAll()
+    {
+        // The animals that died in the previous step are gone by now.
+        if(freeCount + releasedCount > free.length) {
+            free = Arrays.copyOf(free, Math.max(free.length * 2, freeCount + releasedCount));
+        }
+        System.arraycopy(released, 0, free, freeCount, releasedCount);
+        freeCount += releasedCount;
+        releasedCount = 0;
+        Chunk[] current = chunks;
+        int slots = used;
+        for(int first = 0; first < slots; first += CHUNK_SIZE) {
+            Chunk chunk = current[first >>> CHUNK_BITS];
+            int count = Math.min(CHUNK_SIZE, slots - first);
+            int[] ages = chunk.ages;
+            short[] foods = chunk.foods;
+            // Free slots are updated too, so that the loop has no branch.
+            for(int i = 0; i < count; i++) {
+                ages[i]++;
+                foods[i]--;
+            }
+        }
+        for(int first = 0; first < slots; first += CHUNK_SIZE) {
+            Chunk chunk = current[first >>> CHUNK_BITS];
+            int count = Math.min(CHUNK_SIZE, slots - first);
+            short[] foods = chunk.foods;
+            byte[] flags = chunk.flags;
+            for(int i = 0; i < count; i++) {
+                if(foods[i] <= 0 && (flags[i] & LIVE) != 0) {
+                    chunk.owners[i].starve();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param slot The slot of an animal.
+     * @return The chunk holding the slot.
+     */
+    public Chunk getChunk(int slot)
+    {
+        return chunks[slot >>> CHUNK_BITS];
+    }
+
+    /**
+     * @return The number of slots holding a living animal.
+     */
+    public int size()
+    {
+        return used - freeCount - releasedCount;
+    }
+
+    /**
+     * @param chunk The chunk of an animal.
+     * @param slot The slot of the animal.
+     * @return The age of the animal.
+     */
+    public static int getAge(Chunk chunk, int slot)
+    {
+        return chunk.ages[slot & (CHUNK_SIZE - 1)];
+    }
+
+    /**
+     * @param chunk The chunk of an animal.
+     * @param slot The slot of the animal.
+     * @param age The new age of the animal.
+     */
+    public static void setAge(Chunk chunk, int slot, int age)
+    {
+        chunk.ages[slot & (CHUNK_SIZE - 1)] = age;
+    }
+
+    /**
+     * @param chunk The chunk of an animal.
+     * @param slot The slot of the animal.
+     * @return The food level of the animal.
+     */
+    public static int getFoodLevel(Chunk chunk, int slot)
+    {
+        return chunk.foods[slot & (CHUNK_SIZE - 1)];
+    }
+
+    /**
+     * @param chunk The chunk of an animal.
+     * @param slot The slot of the animal.
+     * @param foodLevel The new food level of the animal.
+     */
+    public static void setFoodLevel(Chunk chunk, int slot, int foodLevel)
+    {
+        chunk.foods[slot & (CHUNK_SIZE - 1)] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, foodLevel));
+    }
+
+    /**
+     * @param chunk The chunk of an animal.
+     * @param slot The slot of the animal.
+     * @return true if the animal is male.
+     */
+    public static boolean isMale(Chunk chunk, int slot)
+    {
+        return (chunk.flags[slot & (CHUNK_SIZE - 1)] & MALE) != 0;
+    }
+
+    /**
+     * @param chunk The chunk of an animal.
+     * @param slot The slot of the animal.
+     * @return true if the animal carries the disease.
+     */
+    public static boolean isInfected(Chunk chunk, int slot)
+    {
+        return (chunk.flags[slot & (CHUNK_SIZE - 1)] & INFECTED) != 0;
+    }
+
+    /**
+     * Mark an animal as carrying the disease.
+     * @param chunk The chunk of the animal.
+     * @param slot The slot of the animal.
+     */
+    public static void setInfected(Chunk chunk, int slot)
+    {
+        chunk.flags[slot & (CHUNK_SIZE - 1)] |= INFECTED;
+    }
+
+    /**
+     * Record the constants of the species of an animal.
+     * @param animal The first animal of its species.
+     */
+    private synchronized void describe(Animal animal)
+    {
+        int species = animal.getSpecies();
+        Parameters parameters = context.getParameters();
+        maxAges[species] = animal.getMAX_AGE();
+        maxFoodLevels[species] = animal.getMAX_FOOD_LEVEL();
+        breedingAges[species] = parameters.getBreedingAge(species, animal.getBREEDING_AGE());
+        breedingProbabilities[species] = parameters.getBreedingProbability(species, animal.getBREEDING_PROBABILITY());
+        maxLitterSizes[species] = parameters.getMaxLitterSize(species, animal.getMAX_LITTER_SIZE());
+        nocturnal[species] = animal.getIS_NOCTURNAL();
+        visibilityRequired[species] = animal.getVISIBILITY_REQUIRED();
+        described[species] = true;
+    }
+
+    /**
+     * @param species The code of a species.
+     * @return The maximum age of the species.
+     */
+    public int getMaxAge(int species)
+    {
+        return maxAges[species];
+    }
+
+    /**
+     * @param species The code of a species.
+     * @return The food level above which an animal of the species does not eat.
+     */
+    public int getMaxFoodLevel(int species)
+    {
+        return maxFoodLevels[species];
+    }
+
+    /**
+     * @param species The code of a species.
+     * @return The breeding age of the species.
+     */
+    public int getBreedingAge(int species)
+    {
+        return breedingAges[species];
+    }
+
+    /**
+     * @param species The code of a species.
+     * @return The breeding probability of the species.
+     */
+    public double getBreedingProbability(int species)
+    {
+        return breedingProbabilities[species];
+    }
+
+    /**
+     * @param species The code of a species.
+     * @return The maximum litter size of the species.
+     */
+    public int getMaxLitterSize(int species)
+    {
+        return maxLitterSizes[species];
+    }
+
+    /**
+     * @param species The code of a species.
+     * @return true if the species lives by night.
+     */
+    public boolean isNocturnal(int species)
+    {
+        return nocturnal[species];
+    }
+
+    /**
+     * @param species The code of a species.
+     * @return true if the species needs to see to hunt.
+     */
+    public boolean isVisibilityRequired(int species)
+    {
+        return visibilityRequired[species];
+    }
+}
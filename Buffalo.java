@@ -1,6 +1,3 @@
-
-import java.util.Random;
-
 /**
  * A simple model of a buffalo.
  * Buffalo age, move, breed, eat, and die.
@@ -26,10 +23,10 @@ public class Buffalo extends Prey
     private static final int MAX_FOOD_LEVEL = 30;
     //A list of entities that are part of the buffalo's diet.
     private static final String[] preys = {"Grass"};
-    // A shared random number generator to control breeding.
-    private static final Random rand = Randomizer.getRandom();
     // The infection probability of the animal.
     private static final double DISEASE_INFECTION_RATE = 0.01;
+    // The species code of the buffalo.
+    private static final int SPECIES = Species.register(Buffalo.class, preys);
 
 
     /**
@@ -45,11 +42,11 @@ public class Buffalo extends Prey
         super(field, location);
         if(randomAge) {
             // We assume the simulation starts with a relatively young population
-            age = rand.nextInt(MAX_AGE/2);
+            setAge(getContext().getRandom().nextInt(MAX_AGE/2));
             // food level initialized by Animal constructor
         }else{
-            // age =  0;  Implied by Entity constructor
-            foodLevel = 14;  //Initial food level of a newborn
+            // age =  0;  Implied by the AnimalTable
+            setFoodLevel(14);  //Initial food level of a newborn
         }
     }
 
@@ -125,4 +122,11 @@ public class Buffalo extends Prey
         return DISEASE_INFECTION_RATE;
     }
 
+    /**
+     * @return The buffalo species code
+     */
+    protected int getSPECIES()
+    {
+        return SPECIES;
+    }
 }
@@ -1,3 +1,5 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * A model of disease implemented in the simulation.
  * Some animals are occasionally infected, and infection can spread
@@ -15,7 +17,9 @@ public class Disease {
     // that has contracted the virus has left to live.
     private final int virulence;
 
-    private int count;
+    // The number of deaths caused by the disease. Animals in different
+    // parts of the field may die concurrently.
+    private final AtomicInteger count = new AtomicInteger();
 
     public Disease(double virality, int virulence) {
         this.virality  = virality;
@@ -38,11 +42,11 @@ public class Disease {
 
 
     public void incrementDeath(){
-        count++;
+        count.incrementAndGet();
     }
 
     public int getDeaths(){
-        return count;
+        return count.get();
     }
 
 }
@@ -1,6 +1,3 @@
-
-import java.util.Random;
-
 /**
  * A model of elephants.
  * Elephants age, move, breed, eat grass, and die.
@@ -26,10 +23,10 @@ public class Elephant extends Prey
     private static final int MAX_FOOD_LEVEL = 30;
     // The elephant eat Grass and kill humans and lions by defending itself.
     private static final String[] preys = {"Grass"};
-    // A shared random number generator to control breeding.
-    private static final Random rand = Randomizer.getRandom();
     // The infection probability of the animal.
     private static final double DISEASE_INFECTION_RATE = 0.001;
+    // The species code of the elephant.
+    private static final int SPECIES = Species.register(Elephant.class, preys);
 
 
     /**
@@ -45,11 +42,11 @@ public class Elephant extends Prey
         super(field, location);
         if(randomAge) {
             // We assume the simulation starts with a relatively young population
-            age = rand.nextInt(MAX_AGE/2);
+            setAge(getContext().getRandom().nextInt(MAX_AGE/2));
             // food level initialized by Animal constructor
         }else{
-            // age =  0;  Implied by Entity constructor
-            foodLevel = 15;  //Initial food level of a newborn
+            // age =  0;  Implied by the AnimalTable
+            setFoodLevel(15);  //Initial food level of a newborn
         }
     }
 
@@ -123,4 +120,11 @@ public class Elephant extends Prey
         return DISEASE_INFECTION_RATE;
     }
 
+    /**
+     * @return The elephant species code
+     */
+    protected int getSPECIES()
+    {
+        return SPECIES;
+    }
 }
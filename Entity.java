@@ -13,12 +13,14 @@ public abstract class Entity {
     private Field field;
     // The animal's position in the field.
     private Location location;
+    // The index of the animal's cell in the field.
+    private int cell;
+    // The entity's species code.
+    private final int species;
 
 
     // Whether the entity is alive or not.
     private boolean alive;
-    //The entity' age
-    protected int age;
 
     /**
      * Create a new entity
@@ -27,18 +29,18 @@ public abstract class Entity {
      */
     public Entity(Field field, Location location) {
         this.field = field;
+        species = getSPECIES();
         setLocation(location);
         alive = true;
-        age = 0;
     }
 
     /**
-     * Increases the entity age.
+     * Make the entity die of old age or of the disease, when its
+     * scheduled time has come. Nothing happens if it is already dead.
      */
-    protected void incrementAge()
+    protected void expire()
     {
-        age++;
-        if(age>getMAX_AGE()) {
+        if(alive) {
             setDead();
         }
     }
@@ -74,6 +76,7 @@ public abstract class Entity {
             field.clear(location);
         }
         location = newLocation;
+        cell = field.getCell(newLocation);
         field.place(this, newLocation);
     }
     /**
@@ -85,6 +88,33 @@ public abstract class Entity {
         return location;
     }
 
+    /**
+     * Return the index of the entity cell in its field.
+     * @return The entity cell.
+     */
+    protected int getCell()
+    {
+        return cell;
+    }
+
+    /**
+     * Return the entity species code.
+     * @return The code of the entity species.
+     */
+    protected final int getSpecies()
+    {
+        return species;
+    }
+
+    /**
+     * Return the simulation the entity belongs to.
+     * @return The clock, weather, disease and random generator of the simulation.
+     */
+    protected SimulationContext getContext()
+    {
+        return field.getContext();
+    }
+
     /**
      * Return the entity field.
      * @return The entity field.
@@ -103,6 +133,12 @@ public abstract class Entity {
      */
     abstract public void act(List<Entity> newEntity);
 
+    /**
+     * Schedule the death of old age of an entity that has just entered
+     * the simulation and not acted yet.
+     */
+    protected abstract void scheduleDeath();
+
     /**
      *  @return the entity max age.
      */
@@ -112,4 +148,9 @@ public abstract class Entity {
      * @return the entity food value.
      */
     protected abstract int getFOOD_VALUE();
+
+    /**
+     * @return the entity species code.
+     */
+    protected abstract int getSPECIES();
 }
\ No newline at end of file
@@ -0,0 +1,311 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Store the entities of the simulation in the order in which they act.
+ * Dead entities are not removed one by one: they are skipped while the
+ * entities act and swept out in a single pass at the end of the step.
+ * Newborn entities are collected in a buffer that is reused every step.
+ *
+ * Animals sleeping without carrying the disease can be moved aside to a
+ * bucket of sleepers, whose acts are skipped: they are only visited at
+ * the start of each step, to wake up those whose time has come or who
+ * caught the disease, and to drop those that died in their sleep.
+ *
+ * @author Aymen Berbache and Aleks
+ * @version 2022.02
+ */
+public class EntityStore
+{
+    // The initial capacity of the store.
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // The entities, in the order in which they act.
+    private Entity[] entities;
+    // The number of entities in the store.
+    private int size;
+    // Entities born during the current step.
+    private final List<Entity> newborns;
+    // The animals whose acts are deferred while they sleep.
+    private Animal[] sleepers;
+    // The number of sleepers.
+    private int sleeping;
+    // Receives the entities while they are sorted, null until first needed.
+    private Entity[] sorted;
+    // The position of the first entity of each page while the entities
+    // are sorted, null until first needed.
+    private int[] starts;
+
+    /**
+     * Create an empty store.
+     */
+    public EntityStore()
+    {
+        entities = new Entity[INITIAL_CAPACITY];
+        size = 0;
+        newborns = new ArrayList<>();
+        sleepers = new Animal[INITIAL_CAPACITY];
+        sleeping = 0;
+    }
+
+    /**
+     * Add an entity at the end of the store.
+     * @param entity The entity to add.
+     */
+    public void add(Entity entity)
+    {
+        if(size == entities.length) {
+            entities = Arrays.copyOf(entities, size * 2);
+        }
+        entities[size++] = entity;
+    }
+
+    /**
+     * Add an entity that has just entered the simulation at the end of
+     * the store, and schedule its death of old age unless it was already
+     * eaten.
+     * @param entity The new entity.
+     */
+    public void introduce(Entity entity)
+    {
+        add(entity);
+        if(entity.isAlive()) {
+            entity.scheduleDeath();
+        }
+    }
+
+    /**
+     * Remove all the entities.
+     */
+    public void clear()
+    {
+        Arrays.fill(entities, 0, size, null);
+        size = 0;
+        newborns.clear();
+        Arrays.fill(sleepers, 0, sleeping, null);
+        sleeping = 0;
+    }
+
+    /**
+     * @return The number of entities in the store, sleepers excluded.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return The number of sleepers, some of which may have been killed
+     * since the start of the step.
+     */
+    public int getSleeping()
+    {
+        return sleeping;
+    }
+
+    /**
+     * @param index The position of an entity.
+     * @return The entity at that position.
+     */
+    public Entity get(int index)
+    {
+        return entities[index];
+    }
+
+    /**
+     * Move all the entities of this store to the end of another one.
+     * Newborn entities are not moved.
+     * @param target The store receiving the entities.
+     */
+    public void transferTo(EntityStore target)
+    {
+        for(int i = 0; i < size; i++) {
+            target.add(entities[i]);
+        }
+        Arrays.fill(entities, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Move the entities born during the step to the end of another store,
+     * scheduling their deaths of old age.
+     * @param target The store receiving the newborn entities.
+     * @return The number of entities moved.
+     */
+    public int transferNewbornsTo(EntityStore target)
+    {
+        int born = newborns.size();
+        for(int i = 0; i < born; i++) {
+            target.introduce(newborns.get(i));
+        }
+        newborns.clear();
+        return born;
+    }
+
+    /**
+     * Let all living entities act. Entities born during the step are
+     * kept aside until addNewborns is called.
+     */
+    public void actAll()
+    {
+        for(int i = 0; i < size; i++) {
+            Entity entity = entities[i];
+            if(entity.isAlive()) {
+                entity.act(newborns);
+            }
+        }
+    }
+
+    /**
+     * Let all living entities act, timing each of them if the profiler
+     * samples the current step.
+     * @param profiler The profiler of the simulation.
+     */
+    public void actAll(StepProfiler profiler)
+    {
+        if(!profiler.isSampling()) {
+            actAll();
+            return;
+        }
+        for(int i = 0; i < size; i++) {
+            Entity entity = entities[i];
+            if(entity.isAlive()) {
+                long start = System.nanoTime();
+                entity.act(newborns);
+                profiler.recordAct(entity.getSpecies(), System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Remove the dead entities in a single pass, keeping the order of
+     * the living ones.
+     * @return The number of entities removed.
+     */
+    public int removeDead()
+    {
+        int kept = 0;
+        for(int i = 0; i < size; i++) {
+            Entity entity = entities[i];
+            if(entity.isAlive()) {
+                entities[kept++] = entity;
+            }
+        }
+        Arrays.fill(entities, kept, size, null);
+        int removed = size - kept;
+        size = kept;
+        return removed;
+    }
+
+    /**
+     * Remove the dead entities in a single pass, keeping the order of
+     * the living ones, and move the animals that slept through their act
+     * to the sleepers.
+     * @return The number of entities removed, sleepers excluded.
+     */
+    public int removeDeadAndSleeping()
+    {
+        int kept = 0;
+        int removed = 0;
+        for(int i = 0; i < size; i++) {
+            Entity entity = entities[i];
+            if(!entity.isAlive()) {
+                removed++;
+            }
+            else if(entity instanceof Animal && ((Animal) entity).isDrowsy()) {
+                Animal animal = (Animal) entity;
+                animal.deferSleep();
+                if(sleeping == sleepers.length) {
+                    sleepers = Arrays.copyOf(sleepers, sleeping * 2);
+                }
+                sleepers[sleeping++] = animal;
+            }
+            else {
+                entities[kept++] = entity;
+            }
+        }
+        Arrays.fill(entities, kept, size, null);
+        size = kept;
+        return removed;
+    }
+
+    /**
+     * Check the sleepers before any entity acts. The sleepers that wake
+     * up or caught the disease go back to the end of the store, to act in
+     * this step; the dead ones are dropped.
+     */
+    public void wakeSleepers()
+    {
+        int kept = 0;
+        for(int i = 0; i < sleeping; i++) {
+            Animal animal = sleepers[i];
+            if(animal.sleepThrough()) {
+                sleepers[kept++] = animal;
+            }
+            else if(animal.isAlive()) {
+                add(animal);
+            }
+        }
+        Arrays.fill(sleepers, kept, sleeping, null);
+        sleeping = kept;
+    }
+
+    /**
+     * Move every sleeper back to the end of the store. Must be called
+     * between two steps.
+     */
+    public void wakeAll()
+    {
+        for(int i = 0; i < sleeping; i++) {
+            Animal animal = sleepers[i];
+            if(animal.isAlive()) {
+                add(animal);
+            }
+        }
+        Arrays.fill(sleepers, 0, sleeping, null);
+        sleeping = 0;
+    }
+
+    /**
+     * Order the entities by the page of their cell, keeping the order of
+     * the entities of each page, so that they act page by page.
+     * @param pages The number of pages of the field.
+     * @param pageBits The number of bits of a cell giving its index in its page.
+     */
+    public void sortByPage(int pages, int pageBits)
+    {
+        if(starts == null || starts.length != pages + 1) {
+            starts = new int[pages + 1];
+        }
+        else {
+            Arrays.fill(starts, 0);
+        }
+        for(int i = 0; i < size; i++) {
+            starts[(entities[i].getCell() >>> pageBits) + 1]++;
+        }
+        for(int page = 1; page <= pages; page++) {
+            starts[page] += starts[page - 1];
+        }
+        if(sorted == null || sorted.length < entities.length) {
+            sorted = new Entity[entities.length];
+        }
+        for(int i = 0; i < size; i++) {
+            Entity entity = entities[i];
+            sorted[starts[entity.getCell() >>> pageBits]++] = entity;
+        }
+        Entity[] swap = entities;
+        entities = sorted;
+        sorted = swap;
+        Arrays.fill(sorted, 0, size, null);
+    }
+
+    /**
+     * Add the entities born during the step at the end of the store.
+     * @return The number of entities added.
+     */
+    public int addNewborns()
+    {
+        return transferNewbornsTo(this);
+    }
+}
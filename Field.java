@@ -1,4 +1,5 @@
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
@@ -7,18 +8,80 @@ import java.util.Random;
  * Represent a rectangular grid of field positions.
  * Each position is able to store a single animal.
  *
+ * Each cell is packed into 16 bits: the species code of its occupant,
+ * whether the occupant is kept outside the field, and a small tag left to
+ * whoever keeps it there. The occupying objects are kept in an array with
+ * one entry per cell, or, in a compact field, in an OccupantTable holding
+ * only the occupied cells, so that a large field of mostly grass and
+ * empty cells takes less than 4 bytes per cell.
+ *
  * @author Aymen Berbache and Aleks
  * @version 2022.02
  */
 public class Field
 {
-    // A random number generator for providing random locations.
-    private static final Random rand = Randomizer.getRandom();
+    // The maximum number of locations adjacent to a location.
+    public static final int MAX_NEIGHBOURS = 8;
+    // Row and column offsets of the neighbours of a location.
+    private static final int[] ROW_OFFSETS = {-1, -1, -1, 0, 0, 1, 1, 1};
+    private static final int[] COL_OFFSETS = {-1, 0, 1, -1, 1, -1, 0, 1};
+    // The number of precomputed orderings of the neighbours.
+    private static final int ORDERINGS = 256;
+    // Random permutations of the neighbour offsets, MAX_NEIGHBOURS entries each.
+    private static final int[] orderings = createOrderings();
+
+    // Filters used when collecting adjacent cells.
+    private static final int ALL = 0, FREE = 1, ANIMALS = 2;
+    // The bits of a cell giving the species code of its occupant.
+    private static final int SPECIES_BITS = 0xFF;
+    // The bit of a cell set when its occupant is kept outside the field.
+    private static final int EXTERNAL = 0x100;
+    // The position of the tag of an occupant kept outside the field.
+    private static final int TAG_SHIFT = 9;
+    // The largest tag of an occupant kept outside the field.
+    public static final int MAX_TAG = 0x7F;
     
+    // The clock, weather, disease and random generator of the simulation.
+    private final SimulationContext context;
     // The depth and width of the field.
     private final int depth, width;
-    // Storage for the animals.
-    private final Object[][] field;
+    // Storage for the animals, row by row: cell row * width + col; null if compact.
+    private final Object[] field;
+    // Storage for the animals of a compact field, by cell; null if not compact.
+    private final OccupantTable occupants;
+    // The packed species code, external bit and tag of each cell, 0 if empty;
+    // null if the cells are kept by a subclass.
+    private final short[] cells;
+    // The offset of each neighbour in cell indices.
+    private final int[] cellOffsets;
+    // The number of occupants of each species, indexed by species code.
+    private final int[] populations;
+    // Whether each thread records its changes in the tally bound to it,
+    // rather than in the populations and the changed cells.
+    private boolean tallying;
+    // The tally bound to each thread.
+    private final ThreadLocal<Tally> tallies = new ThreadLocal<>();
+    // The cells placed or cleared since the changes were last cleared,
+    // null until an observer asks for them.
+    private BitSet changed;
+    // Whether every cell must be treated as changed.
+    private boolean allChanged = true;
+
+    /**
+     * The changes made to the field by one thread while the field is
+     * tallying: how the population of each species changed, and which
+     * cells were placed or cleared. A tally is merged into the field
+     * once the thread is done.
+     */
+    public static class Tally
+    {
+        // The change of the population of each species, by species code.
+        private final int[] populations = new int[Species.MAX_SPECIES + 1];
+        // The cells placed or cleared, possibly more than once.
+        private int[] cells = new int[64];
+        // The number of cells recorded.
+        private int count;
+    }
 
     /**
      * Represent a field of the given dimensions.
@@ -27,21 +90,98 @@ public class Field
      */
     public Field(int depth, int width)
     {
+        this(depth, width, new SimulationContext());
+    }
+
+    /**
+     * Represent a field of the given dimensions, for the given simulation.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param context The simulation the field belongs to.
+     */
+    public Field(int depth, int width, SimulationContext context)
+    {
+        this(depth, width, context, false);
+    }
+
+    /**
+     * Represent a field of the given dimensions, for the given simulation,
+     * keeping the animals by cell either in an array or, if compact, in a
+     * table holding only the occupied cells.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param context The simulation the field belongs to.
+     * @param compact Whether to keep only the occupied cells.
+     */
+    public Field(int depth, int width, SimulationContext context, boolean compact)
+    {
+        this(depth, width, context, compact, new short[depth * width]);
+    }
+
+    /**
+     * Represent a field of the given dimensions, for the given simulation,
+     * whose packed cells are either given or kept by a subclass, which
+     * must then override getPacked, setPacked and clearCells.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param context The simulation the field belongs to.
+     * @param compact Whether to keep only the occupied cells.
+     * @param cells The packed cells, or null if they are kept by a subclass.
+     */
+    protected Field(int depth, int width, SimulationContext context, boolean compact, short[] cells)
+    {
+        this.context = context;
         this.depth = depth;
         this.width = width;
-        field = new Object[depth][width];
+        field = compact ? null : new Object[depth * width];
+        occupants = compact ? new OccupantTable(depth, width) : null;
+        this.cells = cells;
+        populations = new int[Species.MAX_SPECIES + 1];
+        cellOffsets = new int[MAX_NEIGHBOURS];
+        for(int n = 0; n < MAX_NEIGHBOURS; n++) {
+            cellOffsets[n] = ROW_OFFSETS[n] * width + COL_OFFSETS[n];
+        }
     }
     
+    /**
+     * Build the table of random orderings of the neighbours. A fixed seed
+     * is used so the table does not depend on the shared random generator.
+     * @return ORDERINGS permutations of the neighbour offsets.
+     */
+    private static int[] createOrderings()
+    {
+        Random tableRand = new Random(ORDERINGS);
+        int[] table = new int[ORDERINGS * MAX_NEIGHBOURS];
+        for(int i = 0; i < ORDERINGS; i++) {
+            int base = i * MAX_NEIGHBOURS;
+            for(int n = 0; n < MAX_NEIGHBOURS; n++) {
+                table[base + n] = n;
+            }
+            // Fisher-Yates shuffle of this ordering.
+            for(int n = MAX_NEIGHBOURS - 1; n > 0; n--) {
+                int other = tableRand.nextInt(n + 1);
+                int swap = table[base + n];
+                table[base + n] = table[base + other];
+                table[base + other] = swap;
+            }
+        }
+        return table;
+    }
+
     /**
      * Empty the field.
      */
     public void clear()
     {
-        for(int row = 0; row < depth; row++) {
-            for(int col = 0; col < width; col++) {
-                field[row][col] = null;
-            }
+        if(field != null) {
+            Arrays.fill(field, null);
         }
+        else {
+            occupants.clear();
+        }
+        clearCells();
+        Arrays.fill(populations, 0);
+        allChanged = true;
     }
     
     /**
@@ -50,7 +190,24 @@ public class Field
      */
     public void clear(Location location)
     {
-        field[location.getRow()][location.getCol()] = null;
+        clear(getCell(location));
+    }
+
+    /**
+     * Clear the given cell.
+     * @param cell The index of the cell to clear.
+     */
+    public void clear(int cell)
+    {
+        int previous = getPacked(cell);
+        count(previous & SPECIES_BITS, Species.NONE, cell);
+        if(field != null) {
+            field[cell] = null;
+        }
+        else if(holdsObject(previous)) {
+            occupants.remove(cell);
+        }
+        setPacked(cell, 0);
     }
     
     /**
@@ -75,7 +232,143 @@ public class Field
      */
     public void place(Object animal, Location location)
     {
-        field[location.getRow()][location.getCol()] = animal;
+        place(animal, getCell(location));
+    }
+
+    /**
+     * Place an animal in the given cell.
+     * If there is already an animal in the cell it will be lost.
+     * @param animal The animal to be placed.
+     * @param cell The index of the cell.
+     */
+    public void place(Object animal, int cell)
+    {
+        int code;
+        if(animal instanceof Entity) {
+            code = ((Entity) animal).getSpecies();
+        }
+        else {
+            code = Species.register(animal.getClass());
+        }
+        set(animal, code, cell);
+    }
+
+    /**
+     * Occupy the given cell with a species whose occupants are kept
+     * outside the field, e.g. the grass of a GrassLayer. The cell counts
+     * as occupied but getObjectAt returns null for it.
+     * If there is already an animal in the cell it will be lost.
+     * @param code The species code of the occupant.
+     * @param cell The index of the cell.
+     */
+    public void placeSpecies(int code, int cell)
+    {
+        placeSpecies(code, cell, 0);
+    }
+
+    /**
+     * Occupy the given cell with a species whose occupants are kept
+     * outside the field, recording a tag with it, e.g. when it appeared.
+     * If there is already an animal in the cell it will be lost.
+     * @param code The species code of the occupant.
+     * @param cell The index of the cell.
+     * @param tag A number from 0 to MAX_TAG, returned by getTag.
+     */
+    public void placeSpecies(int code, int cell, int tag)
+    {
+        set(null, code | EXTERNAL | (tag & MAX_TAG) << TAG_SHIFT, cell);
+    }
+
+    /**
+     * Store an occupant in the given cell.
+     * @param animal The occupant, or null if it is kept outside the field.
+     * @param packed The species code of the occupant, with the external
+     * bit and the tag if it is kept outside the field.
+     * @param cell The index of the cell.
+     */
+    private void set(Object animal, int packed, int cell)
+    {
+        int previous = getPacked(cell);
+        count(previous & SPECIES_BITS, packed & SPECIES_BITS, cell);
+        if(field != null) {
+            field[cell] = animal;
+        }
+        else if(animal != null) {
+            occupants.put(cell, animal);
+        }
+        else if(holdsObject(previous)) {
+            occupants.remove(cell);
+        }
+        setPacked(cell, packed);
+    }
+
+    /**
+     * Record that a cell changed hands, in the populations and the changed
+     * cells if they are tracked, or in the tally of the current thread
+     * while tallying.
+     * @param previous The species code of the previous occupant.
+     * @param code The species code of the new occupant.
+     * @param cell The index of the cell.
+     */
+    private void count(int previous, int code, int cell)
+    {
+        int[] counts = populations;
+        if(tallying) {
+            Tally tally = tallies.get();
+            counts = tally.populations;
+            if(changed != null) {
+                if(tally.count == tally.cells.length) {
+                    tally.cells = Arrays.copyOf(tally.cells, tally.count * 2);
+                }
+                tally.cells[tally.count++] = cell;
+            }
+        }
+        else if(changed != null) {
+            changed.set(cell);
+        }
+        if(previous != Species.NONE) {
+            counts[previous]--;
+        }
+        if(code != Species.NONE) {
+            counts[code]++;
+        }
+    }
+
+    /**
+     * Return the packed species code, external bit and tag of a cell.
+     * @param cell The index of the cell.
+     * @return The packed cell, 0 if it is empty.
+     */
+    protected int getPacked(int cell)
+    {
+        return cells[cell];
+    }
+
+    /**
+     * Set the packed species code, external bit and tag of a cell.
+     * @param cell The index of the cell.
+     * @param packed The packed cell, 0 to empty it.
+     */
+    protected void setPacked(int cell, int packed)
+    {
+        cells[cell] = (short) packed;
+    }
+
+    /**
+     * Empty every cell, without changing the populations.
+     */
+    protected void clearCells()
+    {
+        Arrays.fill(cells, (short) 0);
+    }
+
+    /**
+     * @param packed A packed cell.
+     * @return true if the cell holds an object kept in the field.
+     */
+    private static boolean holdsObject(int packed)
+    {
+        return (packed & SPECIES_BITS) != Species.NONE && (packed & EXTERNAL) == 0;
     }
     
     /**
@@ -96,9 +389,340 @@ public class Field
      */
     public Object getObjectAt(int row, int col)
     {
-        return field[row][col];
+        return getObjectAt(row * width + col);
     }
     
+    /**
+     * Return the object in the given cell, if any.
+     * @param cell The index of the cell, as returned by getCell.
+     * @return The object in the given cell, or null if there is none.
+     */
+    public Object getObjectAt(int cell)
+    {
+        if(field != null) {
+            return field[cell];
+        }
+        return holdsObject(getPacked(cell)) ? occupants.get(cell) : null;
+    }
+
+    /**
+     * Return the species of the occupant of the given cell.
+     * @param cell The index of the cell.
+     * @return The species code of the occupant, or Species.NONE if the cell is empty.
+     */
+    public int getSpeciesAt(int cell)
+    {
+        return getPacked(cell) & SPECIES_BITS;
+    }
+
+    /**
+     * Return the tag recorded with an occupant kept outside the field.
+     * @param cell The index of the cell.
+     * @return The tag given to placeSpecies, or -1 if the cell is empty or
+     * holds an object kept in the field.
+     */
+    public int getTag(int cell)
+    {
+        int packed = getPacked(cell);
+        if((packed & EXTERNAL) == 0) {
+            return -1;
+        }
+        return (packed >>> TAG_SHIFT) & MAX_TAG;
+    }
+
+    /**
+     * @return true if the field keeps only the occupied cells.
+     */
+    public boolean isCompact()
+    {
+        return field == null;
+    }
+
+    /**
+     * Return the index of the cell at the given coordinates.
+     * Cells are numbered row by row, from 0 to depth * width - 1.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The index of the cell.
+     */
+    public int getCell(int row, int col)
+    {
+        return row * width + col;
+    }
+
+    /**
+     * Return the index of the cell at the given location.
+     * @param location The location of the cell.
+     * @return The index of the cell.
+     */
+    public int getCell(Location location)
+    {
+        return location.getRow() * width + location.getCol();
+    }
+
+    /**
+     * Return the location of the given cell.
+     * @param cell The index of the cell.
+     * @return A new location for that cell.
+     */
+    public Location getLocation(int cell)
+    {
+        return new Location(cell / width, cell % width);
+    }
+
+    /**
+     * Write the cells adjacent to the given one into the buffer, in a
+     * random order. The cell itself is not included and all cells lie
+     * within the grid. Nothing is allocated.
+     * @param cell The cell from which to generate adjacencies.
+     * @param cells A buffer of at least MAX_NEIGHBOURS entries.
+     * @return The number of cells written to the buffer.
+     */
+    public int adjacentCells(int cell, int[] cells)
+    {
+        return collectAdjacentCells(cell, cells, ALL);
+    }
+
+    /**
+     * Write the free cells adjacent to the given one into the buffer,
+     * in a random order. Nothing is allocated.
+     * @param cell The cell from which to generate adjacencies.
+     * @param cells A buffer of at least MAX_NEIGHBOURS entries.
+     * @return The number of cells written to the buffer.
+     */
+    public int freeAdjacentCells(int cell, int[] cells)
+    {
+        return collectAdjacentCells(cell, cells, FREE);
+    }
+
+    /**
+     * Write the cells adjacent to the given one that contain an animal
+     * into the buffer, in a random order. Nothing is allocated.
+     * @param cell The cell from which to generate adjacencies.
+     * @param cells A buffer of at least MAX_NEIGHBOURS entries.
+     * @return The number of cells written to the buffer.
+     */
+    public int adjacentAnimalCells(int cell, int[] cells)
+    {
+        return collectAdjacentCells(cell, cells, ANIMALS);
+    }
+
+    /**
+     * Find a random free cell adjacent to the given one.
+     * @param cell The cell from which to generate adjacencies.
+     * @return The index of a free adjacent cell, or -1 if there is none.
+     */
+    public int freeAdjacentCell(int cell)
+    {
+        int base = context.getRandom().nextInt(ORDERINGS) * MAX_NEIGHBOURS;
+        boolean interior = isInterior(cell);
+        for(int i = 0; i < MAX_NEIGHBOURS; i++) {
+            int n = orderings[base + i];
+            int next = cell + cellOffsets[n];
+            if((interior || isNeighbourInside(cell, n)) && (getPacked(next) & SPECIES_BITS) == Species.NONE) {
+                return next;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Write the adjacent cells that pass the filter into the buffer,
+     * following one of the precomputed random orderings.
+     * @param cell The cell from which to generate adjacencies.
+     * @param buffer A buffer of at least MAX_NEIGHBOURS entries.
+     * @param filter Which cells to keep: ALL, FREE or ANIMALS.
+     * @return The number of cells written to the buffer.
+     */
+    private int collectAdjacentCells(int cell, int[] buffer, int filter)
+    {
+        int base = context.getRandom().nextInt(ORDERINGS) * MAX_NEIGHBOURS;
+        boolean interior = isInterior(cell);
+        int count = 0;
+        for(int i = 0; i < MAX_NEIGHBOURS; i++) {
+            int n = orderings[base + i];
+            int next = cell + cellOffsets[n];
+            if(interior || isNeighbourInside(cell, n)) {
+                int code = getPacked(next) & SPECIES_BITS;
+                if(filter == ALL
+                        || (filter == FREE && code == Species.NONE)
+                        || (filter == ANIMALS && Species.isAnimal(code))) {
+                    buffer[count++] = next;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param cell The index of a cell.
+     * @return true if all the neighbours of the cell lie within the grid.
+     */
+    private boolean isInterior(int cell)
+    {
+        int row = cell / width;
+        int col = cell - row * width;
+        return row > 0 && row < depth - 1 && col > 0 && col < width - 1;
+    }
+
+    /**
+     * @param cell The index of a cell on the border of the grid.
+     * @param n The neighbour, an index into the offset tables.
+     * @return true if that neighbour lies within the grid.
+     */
+    private boolean isNeighbourInside(int cell, int n)
+    {
+        int nextRow = cell / width + ROW_OFFSETS[n];
+        int nextCol = cell % width + COL_OFFSETS[n];
+        return nextRow >= 0 && nextRow < depth && nextCol >= 0 && nextCol < width;
+    }
+
+    /**
+     * Copy the first cells of the buffer into a new list of locations.
+     * @param cells The buffer of cells.
+     * @param count The number of cells to copy.
+     * @return A list of the locations of those cells.
+     */
+    private List<Location> toLocations(int[] cells, int count)
+    {
+        List<Location> locations = new LinkedList<>();
+        for(int i = 0; i < count; i++) {
+            locations.add(getLocation(cells[i]));
+        }
+        return locations;
+    }
+
+    /**
+     * Return the number of occupants of the given species. The count is
+     * kept up to date as objects are placed and cleared.
+     * @param code The species code.
+     * @return The number of cells occupied by that species.
+     */
+    public int getPopulation(int code)
+    {
+        return populations[code];
+    }
+
+    /**
+     * Let each thread record the changes it makes in the tally bound to
+     * it, rather than in the populations and the changed cells, so that
+     * different parts of the field can be changed concurrently. Every
+     * thread changing the field must have a tally bound while tallying.
+     * @param tallying true to record the changes in tallies, false to
+     * update the populations and the changed cells directly again.
+     */
+    public void setTallying(boolean tallying)
+    {
+        this.tallying = tallying;
+    }
+
+    /**
+     * Bind a tally to the current thread, to record the changes it makes
+     * while the field is tallying.
+     * @param tally The tally to bind, or null to unbind.
+     * @return The tally previously bound, or null if there was none.
+     */
+    public Tally bindTally(Tally tally)
+    {
+        Tally previous = tallies.get();
+        if(tally == null) {
+            tallies.remove();
+        }
+        else {
+            tallies.set(tally);
+        }
+        return previous;
+    }
+
+    /**
+     * Add the changes of a tally to the populations and the changed
+     * cells, and empty the tally. Must not be called concurrently.
+     * @param tally The tally to merge.
+     */
+    public void merge(Tally tally)
+    {
+        int species = Species.count();
+        for(int code = 1; code < species; code++) {
+            populations[code] += tally.populations[code];
+            tally.populations[code] = 0;
+        }
+        for(int i = 0; i < tally.count && changed != null; i++) {
+            changed.set(tally.cells[i]);
+        }
+        tally.count = 0;
+    }
+
+    /**
+     * Start or stop tracking the cells placed or cleared, e.g. for a view
+     * drawing only the cells changed since its last frame. Nothing is
+     * tracked until asked for, so that a simulation nobody watches does
+     * not pay for it. Every cell is treated as changed once tracking starts.
+     * @param tracking true to track the changed cells.
+     */
+    public void setTrackingChanges(boolean tracking)
+    {
+        if(tracking && changed == null) {
+            changed = new BitSet(depth * width);
+            allChanged = true;
+        }
+        else if(!tracking) {
+            changed = null;
+        }
+    }
+
+    /**
+     * @return true if every cell must be treated as changed, e.g. after
+     * the field was emptied or when the changed cells are not tracked.
+     */
+    public boolean isAllChanged()
+    {
+        return allChanged || changed == null;
+    }
+
+    /**
+     * Find the next cell placed or cleared since the changes were last
+     * cleared. Does not account for isAllChanged.
+     * @param from The index of the first cell to check.
+     * @return The index of the next changed cell, or -1 if there is none.
+     */
+    public int nextChangedCell(int from)
+    {
+        return changed == null ? -1 : changed.nextSetBit(from);
+    }
+
+    /**
+     * @return The number of cells placed or cleared since the changes were
+     * last cleared. Does not account for isAllChanged.
+     */
+    public int getChangedCount()
+    {
+        return changed == null ? 0 : changed.cardinality();
+    }
+
+    /**
+     * Forget the changed cells, once they have been drawn.
+     */
+    public void clearChanges()
+    {
+        if(changed != null) {
+            changed.clear();
+            allChanged = false;
+        }
+    }
+
+    /**
+     * Recount the populations from the species of the cells.
+     */
+    public void recount()
+    {
+        Arrays.fill(populations, 0);
+        int size = depth * width;
+        for(int cell = 0; cell < size; cell++) {
+            populations[getPacked(cell) & SPECIES_BITS]++;
+        }
+        populations[Species.NONE] = 0;
+    }
+
     /**
      * Generate a random location that is adjacent to the
      * given location, or is the same location.
@@ -109,8 +733,9 @@ public class Field
      */
     public Location randomAdjacentLocation(Location location)
     {
-        List<Location> adjacent = adjacentLocations(location);
-        return adjacent.get(0);
+        int[] cells = new int[MAX_NEIGHBOURS];
+        adjacentCells(getCell(location), cells);
+        return getLocation(cells[0]);
     }
     
     /**
@@ -120,14 +745,8 @@ public class Field
      */
     public List<Location> getFreeAdjacentLocations(Location location)
     {
-        List<Location> free = new LinkedList<>();
-        List<Location> adjacent = adjacentLocations(location);
-        for(Location next : adjacent) {
-            if(getObjectAt(next) == null) {
-                free.add(next);
-            }
-        }
-        return free;
+        int[] cells = new int[MAX_NEIGHBOURS];
+        return toLocations(cells, freeAdjacentCells(getCell(location), cells));
     }
     
     /**
@@ -140,10 +759,9 @@ public class Field
      */
     public Location freeAdjacentLocation(Location location)
     {
-        // The available free ones.
-        List<Location> free = getFreeAdjacentLocations(location);
-        if(free.size() > 0) {
-            return free.get(0);
+        int free = freeAdjacentCell(getCell(location));
+        if(free >= 0) {
+            return getLocation(free);
         }
         else {
             return null;
@@ -160,29 +778,8 @@ public class Field
     public List<Location> adjacentLocations(Location location)
     {
         assert location != null : "Null location passed to adjacentLocations";
-        // The list of locations to be returned.
-        List<Location> locations = new LinkedList<>();
-        if(location != null) {
-            int row = location.getRow();
-            int col = location.getCol();
-            for(int roffset = -1; roffset <= 1; roffset++) {
-                int nextRow = row + roffset;
-                if(nextRow >= 0 && nextRow < depth) {
-                    for(int coffset = -1; coffset <= 1; coffset++) {
-                        int nextCol = col + coffset;
-                        // Exclude invalid locations and the original location.
-                        if(nextCol >= 0 && nextCol < width && (roffset != 0 || coffset != 0)) {
-                            locations.add(new Location(nextRow, nextCol));
-                        }
-                    }
-                }
-            }
-            
-            // Shuffle the list. Several other methods rely on the list
-            // being in a random order.
-            Collections.shuffle(locations, rand);
-        }
-        return locations;
+        int[] cells = new int[MAX_NEIGHBOURS];
+        return toLocations(cells, adjacentCells(getCell(location), cells));
     }
     /**
      * Return a list of locations adjacent to the given one that contain animals
@@ -192,15 +789,17 @@ public class Field
      * @return A list of locations adjacent to that given that contain an animal.
      */
     public List<Location> adjacentAnimals(Location location) {
-        List<Location> adjacentLocations = adjacentLocations(location);
-        List<Location> animals = new LinkedList<>();
-        for(Location l : adjacentLocations) {
-            Object species = getObjectAt(l);
-            if(species instanceof Animal) {
-                animals.add(l);
-            }
-        }
-        return animals;
+        int[] cells = new int[MAX_NEIGHBOURS];
+        return toLocations(cells, adjacentAnimalCells(getCell(location), cells));
+    }
+
+    /**
+     * Return the simulation the field belongs to.
+     * @return The clock, weather, disease and random generator of the simulation.
+     */
+    public SimulationContext getContext()
+    {
+        return context;
     }
 
     /**
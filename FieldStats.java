@@ -1,32 +1,22 @@
-import java.awt.Color;
-import java.lang.reflect.Array;
 import java.util.ArrayList;
-import java.util.HashMap;
 
 /**
- * This class collects and provides some statistical data on the state 
- * of a field. It is flexible: it will create and maintain a counter 
- * for any class of object that is found within the field.
+ * This class provides some statistical data on the state of a field.
+ * It is flexible: it reports a count for every species registered
+ * in the simulation. The counts are maintained by the field itself as
+ * entities are placed and cleared, so no scan of the grid is needed
+ * and every query takes time proportional to the number of species.
  *
  * @author Aymen Berbache and Aleks
  * @version 2021.03.03
  */
 public class FieldStats
 {
-    // Counters for each type of entity in the simulation.
-    private final HashMap<Class, Counter> counters;
-    // Whether the counters are currently up to date.
-    private boolean countsValid;
-
     /**
      * Construct a FieldStats object.
      */
     public FieldStats()
     {
-        // Set up a collection for counters for each type of animal that
-        // we might find
-        counters = new HashMap<>();
-        countsValid = true;
     }
 
     /**
@@ -35,56 +25,27 @@ public class FieldStats
      */
     public ArrayList<String> getPopulationDetails(Field field)
     {
-        StringBuffer buffer = new StringBuffer();
         ArrayList<String> list = new ArrayList<>();
-        if(!countsValid) {
-            generateCounts(field);
-        }
-        for(Class key : counters.keySet()) {
-            Counter info = counters.get(key);
+        int species = Species.count();
+        for(int code = 1; code < species; code++) {
             String details = "";
-            details += info.getName() + ": " + info.getCount() + " ";
+            details += Species.getName(code) + ": " + field.getPopulation(code) + " ";
             list.add(details);
-
         }
         return list;
     }
-    
-    /**
-     * Invalidate the current set of statistics; reset all 
-     * counts to zero.
-     */
-    public void reset()
-    {
-        countsValid = false;
-        for(Class key : counters.keySet()) {
-            Counter count = counters.get(key);
-            count.reset();
-        }
-    }
 
     /**
-     * Increment the count for one class of animal.
-     * @param animalClass The class of animal to increment.
+     * Get the population of every species in the field.
+     * @return The populations, indexed by species code.
      */
-    public void incrementCount(Class animalClass)
+    public int[] getPopulations(Field field)
     {
-        Counter count = counters.get(animalClass);
-        if(count == null) {
-            // We do not have a counter for this species yet.
-            // Create one.
-            count = new Counter(animalClass.getName());
-            counters.put(animalClass, count);
+        int[] populations = new int[Species.count()];
+        for(int code = 1; code < populations.length; code++) {
+            populations[code] = field.getPopulation(code);
         }
-        count.increment();
-    }
-
-    /**
-     * Indicate that an animal count has been completed.
-     */
-    public void countFinished()
-    {
-        countsValid = true;
+        return populations;
     }
 
     /**
@@ -96,36 +57,12 @@ public class FieldStats
     {
         // How many counts are non-zero.
         int nonZero = 0;
-        if(!countsValid) {
-            generateCounts(field);
-        }
-        for(Class key : counters.keySet()) {
-            Counter info = counters.get(key);
-            if(info.getCount() > 0) {
+        int species = Species.count();
+        for(int code = 1; code < species; code++) {
+            if(field.getPopulation(code) > 0) {
                 nonZero++;
             }
         }
         return nonZero > 1;
     }
-    
-    /**
-     * Generate counts of the number of each animal species.
-     * These are not kept up to date as animals
-     * are placed in the field, but only when a request
-     * is made for the information.
-     * @param field The field to generate the stats for.
-     */
-    private void generateCounts(Field field)
-    {
-        reset();
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                Object animal = field.getObjectAt(row, col);
-                if(animal != null) {
-                    incrementCount(animal.getClass());
-                }
-            }
-        }
-        countsValid = true;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,136 @@
+/**
+ * An immutable snapshot of the state of a simulation after a step, as
+ * shown by the graphical view. A key frame holds the species of every
+ * cell; other frames only hold the cells that changed since the previous
+ * frame, so they must be applied in order on top of the last key frame.
+ *
+ * @author Aymen Berbache and Aleks
+ * @version 2022.02
+ */
+public class Frame
+{
+    // The step of the simulation.
+    private final int step;
+    // The time of day, the weather and the number of disease deaths.
+    private final String time;
+    private final String weather;
+    private final int diseaseDeaths;
+    // The population of each species, as shown by the view.
+    private final String populationDetails;
+    // Whether the frame holds every cell rather than the changed ones.
+    private final boolean keyFrame;
+    // The changed cells, or null for a key frame.
+    private final int[] cells;
+    // The species code of each changed cell, or of every cell for a key frame.
+    private final byte[] species;
+
+    /**
+     * Take a snapshot of the field.
+     * @param step The step of the simulation.
+     * @param field The field of the simulation.
+     * @param time The time of day.
+     * @param weather The weather.
+     * @param disease The disease spreading in the simulation.
+     * @param populationDetails The population of each species.
+     * @param keyFrame true to record every cell, false to record the
+     *                 cells changed since the changes were last cleared.
+     */
+    public Frame(int step, Field field, String time, Weather weather, Disease disease,
+                 String populationDetails, boolean keyFrame)
+    {
+        this.step = step;
+        this.time = time;
+        this.weather = weather.getWeatherStatus();
+        this.diseaseDeaths = disease.getDeaths();
+        this.populationDetails = populationDetails;
+        this.keyFrame = keyFrame;
+        if(keyFrame) {
+            cells = null;
+            species = new byte[field.getDepth() * field.getWidth()];
+            for(int cell = 0; cell < species.length; cell++) {
+                species[cell] = (byte) field.getSpeciesAt(cell);
+            }
+        }
+        else {
+            cells = new int[field.getChangedCount()];
+            species = new byte[cells.length];
+            int index = 0;
+            for(int cell = field.nextChangedCell(0); cell >= 0; cell = field.nextChangedCell(cell + 1)) {
+                cells[index] = cell;
+                species[index++] = (byte) field.getSpeciesAt(cell);
+            }
+        }
+    }
+
+    /**
+     * Apply the frame to the species codes of the cells.
+     * @param target The species code of every cell, updated in place.
+     */
+    public void applyTo(byte[] target)
+    {
+        if(keyFrame) {
+            System.arraycopy(species, 0, target, 0, species.length);
+        }
+        else {
+            for(int i = 0; i < cells.length; i++) {
+                target[cells[i]] = species[i];
+            }
+        }
+    }
+
+    /**
+     * @return true if the frame holds every cell.
+     */
+    public boolean isKeyFrame()
+    {
+        return keyFrame;
+    }
+
+    /**
+     * @return The changed cells, or null for a key frame. Must not be modified.
+     */
+    public int[] getCells()
+    {
+        return cells;
+    }
+
+    /**
+     * @return The step of the simulation.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * @return The time of day.
+     */
+    public String getTime()
+    {
+        return time;
+    }
+
+    /**
+     * @return The weather.
+     */
+    public String getWeather()
+    {
+        return weather;
+    }
+
+    /**
+     * @return The number of deaths caused by the disease.
+     */
+    public int getDiseaseDeaths()
+    {
+        return diseaseDeaths;
+    }
+
+    /**
+     * @return The population of each species.
+     */
+    public String getPopulationDetails()
+    {
+        return populationDetails;
+    }
+}
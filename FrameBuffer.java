@@ -0,0 +1,66 @@
+/**
+ * A bounded ring buffer of frames passed from the simulation thread to
+ * the thread drawing them. The simulation never waits for the view: when
+ * the buffer is full the frame is refused, and the producer is expected
+ * to drop the pending frames and publish a key frame instead.
+ *
+ * @author Aymen Berbache and Aleks
+ * @version 2022.02
+ */
+public class FrameBuffer
+{
+    // The frames, in a ring of fixed size.
+    private final Frame[] frames;
+    // The position of the oldest frame and the number of frames.
+    private int head, size;
+
+    /**
+     * Create an empty buffer.
+     * @param capacity The maximum number of pending frames.
+     */
+    public FrameBuffer(int capacity)
+    {
+        frames = new Frame[capacity];
+    }
+
+    /**
+     * Add a frame at the end of the buffer, unless it is full.
+     * @param frame The frame to add.
+     * @return true if the frame was added.
+     */
+    public synchronized boolean offer(Frame frame)
+    {
+        if(size == frames.length) {
+            return false;
+        }
+        frames[(head + size) % frames.length] = frame;
+        size++;
+        return true;
+    }
+
+    /**
+     * Remove the oldest frame.
+     * @return The oldest frame, or null if the buffer is empty.
+     */
+    public synchronized Frame poll()
+    {
+        if(size == 0) {
+            return null;
+        }
+        Frame frame = frames[head];
+        frames[head] = null;
+        head = (head + 1) % frames.length;
+        size--;
+        return frame;
+    }
+
+    /**
+     * Drop every pending frame.
+     */
+    public synchronized void clear()
+    {
+        while(size > 0) {
+            poll();
+        }
+    }
+}
@@ -7,12 +7,15 @@
  */
 public class Grass extends Plant {
 
+    // The constants are shared with the GrassLayer, which stores grass without objects.
     //The maximum age of grass.
-    private static final int MAX_AGE = 14;
+    static final int MAX_AGE = 14;
     //The food value of grass.
-    private static final int FOOD_VALUE = 8;
+    static final int FOOD_VALUE = 8;
     //The probability ratio at which grass spread
-    private static final double SPREADING_PROBABILITY = 0.07;
+    static final double SPREADING_PROBABILITY = 0.07;
+    // The species code of the grass.
+    static final int SPECIES = Species.register(Grass.class);
 
     /**
      * Create a new grass patch and place it on the field
@@ -53,4 +56,11 @@ public class Grass extends Plant {
     protected double getSPREADING_PROBABILITY() {
         return SPREADING_PROBABILITY;
     }
+
+    /**
+     * @return The grass species code
+     */
+    protected int getSPECIES() {
+        return SPECIES;
+    }
 }
\ No newline at end of file
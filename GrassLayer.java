@@ -0,0 +1,353 @@
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Keep the grass of a simulation without a Grass object per patch. The
+ * field records which cells hold grass, tagged with the growth at which
+ * each patch appeared modulo MAX_TAG + 1, which is enough to tell its age
+ * since no patch outlives that growth.
+ *
+ * All grass lives for the same growth, so patches wither in the order in
+ * which they appeared: the layer records the patches in order of
+ * appearance, and withering only looks at the oldest ones. A patch eaten
+ * or trampled is simply no longer grass in the field, and its record is
+ * skipped when reached. In a compact field the layer keeps no record, to
+ * save the memory: withering and spreading scan the field instead. The
+ * field is divided into regions of REGION_CELLS cells, each divided into
+ * 64 blocks; for each region the layer keeps the growth at which its
+ * oldest patch appeared, and a bit for each block that may hold grass.
+ * Only the blocks that may hold grass are read, so that the cells with
+ * no grass around, e.g. most of a large MappedField, are left alone, and
+ * a region is only scanned for withering patches once its oldest patch
+ * is due. The blocks holding grass are still read whenever grass
+ * spreads, and a block whose grass was all eaten is read once more
+ * before its bit is cleared.
+ *
+ * Grass spreads as it does as Grass objects: each patch spreads with the
+ * spreading probability, doubled when it is windy, to half of the free
+ * cells around it. Rather than drawing a number for every patch, the
+ * gaps between the patches that spread are drawn, so that only those
+ * patches are visited.
+ *
+ * @author Aymen Berbache and Aleks
+ * @version 2022.02
+ */
+public class GrassLayer
+{
+    // The food value of a patch of grass.
+    public static final int FOOD_VALUE = Grass.FOOD_VALUE;
+    // The initial capacity of the record of patches.
+    private static final int INITIAL_CAPACITY = 1024;
+    // The number of bits of a cell giving its index in its block.
+    private static final int BLOCK_BITS = 6;
+    // The number of cells of a block.
+    private static final int BLOCK_CELLS = 1 << BLOCK_BITS;
+    // The number of bits of a cell giving its index in its region, whose
+    // Long.SIZE blocks have a bit each.
+    private static final int REGION_BITS = BLOCK_BITS + 6;
+    // The number of cells of a region.
+    private static final int REGION_CELLS = 1 << REGION_BITS;
+    // The oldest growth of a region holding no grass.
+    private static final long NO_GRASS = Long.MAX_VALUE;
+
+    // The field holding the grass.
+    private final Field field;
+    // The species code of the grass.
+    private final int species;
+    // The cell of each patch recorded, by record number modulo the capacity.
+    private int[] cells;
+    // The growth of the simulation when each patch recorded appeared.
+    private long[] births;
+    // The number of the oldest record kept, and of the next record.
+    private long head, tail;
+    // Whether the patches are recorded, rather than found by scanning the field.
+    private final boolean recording;
+    // The growth at which the oldest patch of each region appeared, or
+    // earlier, NO_GRASS if the region holds no grass; only if not recording.
+    private final long[] oldest;
+    // The blocks of each region that may hold grass, a bit per block; only
+    // if not recording.
+    private final long[] blocks;
+    // Receives the free cells around a spreading patch.
+    private final int[] neighbours;
+
+    /**
+     * Create an empty layer for the given field.
+     * @param field The field holding the grass.
+     */
+    public GrassLayer(Field field)
+    {
+        this.field = field;
+        species = Grass.SPECIES;
+        recording = !field.isCompact();
+        cells = new int[recording ? INITIAL_CAPACITY : 0];
+        births = new long[recording ? INITIAL_CAPACITY : 0];
+        int size = field.getDepth() * field.getWidth();
+        oldest = new long[recording ? 0 : (size + REGION_CELLS - 1) >>> REGION_BITS];
+        Arrays.fill(oldest, NO_GRASS);
+        blocks = new long[oldest.length];
+        neighbours = new int[Field.MAX_NEIGHBOURS];
+    }
+
+    /**
+     * Forget every patch. The field must be cleared as well.
+     */
+    public void clear()
+    {
+        head = tail;
+        Arrays.fill(oldest, NO_GRASS);
+        Arrays.fill(blocks, 0);
+    }
+
+    /**
+     * Grow a new patch of grass in the given cell.
+     * @param cell The index of the cell.
+     */
+    public void plant(int cell)
+    {
+        long growth = field.getContext().getGrowth();
+        if(recording) {
+            if(tail - head == cells.length) {
+                grow();
+            }
+            int index = (int) (tail & (cells.length - 1));
+            cells[index] = cell;
+            births[index] = growth;
+            tail++;
+        }
+        else {
+            mark(cell, growth);
+        }
+        field.placeSpecies(species, cell, (int) (growth & Field.MAX_TAG));
+    }
+
+    /**
+     * Take over a patch of grass already in the field, e.g. read from a
+     * world file, keeping its age. Only a layer that keeps no record, i.e.
+     * of a compact field, can take over patches.
+     * @param cell The index of a cell holding grass of this layer.
+     */
+    public void adopt(int cell)
+    {
+        if(recording) {
+            throw new IllegalStateException("Only a layer of a compact field can take over patches.");
+        }
+        mark(cell, field.getContext().getGrowth() - getAge(cell));
+    }
+
+    /**
+     * Record that a region holds a patch, in the given cell.
+     * @param cell The cell of the patch.
+     * @param birth The growth at which the patch appeared.
+     */
+    private void mark(int cell, long birth)
+    {
+        int region = cell >>> REGION_BITS;
+        oldest[region] = Math.min(oldest[region], birth);
+        blocks[region] |= 1L << (cell >>> BLOCK_BITS);
+    }
+
+    /**
+     * @return The number of patches of grass in the field.
+     */
+    public int size()
+    {
+        return field.getPopulation(species);
+    }
+
+    /**
+     * Return the age of the grass in the given cell.
+     * @param cell The index of the cell.
+     * @return The growth since the patch appeared, or -1 if the cell does
+     * not hold grass of this layer.
+     */
+    public int getAge(int cell)
+    {
+        if(!isGrass(cell)) {
+            return -1;
+        }
+        return (int) (field.getContext().getGrowth() - field.getTag(cell)) & Field.MAX_TAG;
+    }
+
+    /**
+     * Let the patches that have grown by more than the maximum age of
+     * grass wither. Called once the growth of the step is known.
+     */
+    public void wither()
+    {
+        long growth = field.getContext().getGrowth();
+        if(!recording) {
+            int size = field.getDepth() * field.getWidth();
+            for(int region = 0; region < oldest.length; region++) {
+                if(oldest[region] != NO_GRASS && oldest[region] + Grass.MAX_AGE + 1 <= growth) {
+                    // Clear the withered patches and find the oldest left.
+                    long left = NO_GRASS;
+                    for(long mask = blocks[region]; mask != 0; mask &= mask - 1) {
+                        int first = region << REGION_BITS | Long.numberOfTrailingZeros(mask) << BLOCK_BITS;
+                        int end = Math.min(size, first + BLOCK_CELLS);
+                        boolean empty = true;
+                        for(int cell = first; cell < end; cell++) {
+                            int age = getAge(cell);
+                            if(age > Grass.MAX_AGE) {
+                                field.clear(cell);
+                            }
+                            else if(age >= 0) {
+                                left = Math.min(left, growth - age);
+                                empty = false;
+                            }
+                        }
+                        if(empty) {
+                            blocks[region] &= ~Long.lowestOneBit(mask);
+                        }
+                    }
+                    oldest[region] = left;
+                }
+            }
+            return;
+        }
+        int mask = cells.length - 1;
+        while(head < tail && births[(int) (head & mask)] + Grass.MAX_AGE + 1 <= growth) {
+            int index = (int) (head & mask);
+            if(isCurrent(cells[index], births[index])) {
+                field.clear(cells[index]);
+            }
+            head++;
+        }
+    }
+
+    /**
+     * Let the patches present at the start of the step spread.
+     * @return The number of patches grown.
+     */
+    public int spread()
+    {
+        SimulationContext context = field.getContext();
+        double probability = context.getParameters()
+                .getSpreadingProbability(species, Grass.SPREADING_PROBABILITY);
+        if(context.getWeather().isWindy()) {
+            probability *= 2;
+        }
+        if(probability <= 0) {
+            return 0;
+        }
+        RandomGenerator rand = context.getRandom();
+        int grown = 0;
+        if(!recording) {
+            // Patches grown during the pass are of age zero and do not
+            // spread until the next step, so only the blocks that held
+            // grass when the pass reached their region are scanned, in
+            // the regions holding a patch from an earlier growth.
+            long growth = context.getGrowth();
+            int size = field.getDepth() * field.getWidth();
+            long skip = gap(rand, probability);
+            for(int region = 0; region < oldest.length; region++) {
+                if(oldest[region] < growth) {
+                    for(long mask = blocks[region]; mask != 0; mask &= mask - 1) {
+                        int first = region << REGION_BITS | Long.numberOfTrailingZeros(mask) << BLOCK_BITS;
+                        int end = Math.min(size, first + BLOCK_CELLS);
+                        boolean empty = true;
+                        for(int cell = first; cell < end; cell++) {
+                            int age = getAge(cell);
+                            if(age >= 0) {
+                                empty = false;
+                            }
+                            if(age > 0) {
+                                if(skip == 0) {
+                                    grown += spreadFrom(cell);
+                                    skip = gap(rand, probability);
+                                }
+                                else {
+                                    skip--;
+                                }
+                            }
+                        }
+                        if(empty) {
+                            blocks[region] &= ~Long.lowestOneBit(mask);
+                        }
+                    }
+                }
+            }
+            return grown;
+        }
+        // Patches grown during the pass do not spread until the next step.
+        long end = tail;
+        for(long record = head + gap(rand, probability); record < end;
+                record += 1 + gap(rand, probability)) {
+            int index = (int) (record & (cells.length - 1));
+            if(isCurrent(cells[index], births[index])) {
+                grown += spreadFrom(cells[index]);
+            }
+        }
+        return grown;
+    }
+
+    /**
+     * Spread a patch to half of the free cells around it.
+     * @param cell The cell of the patch.
+     * @return The number of patches grown.
+     */
+    private int spreadFrom(int cell)
+    {
+        int free = field.freeAdjacentCells(cell, neighbours);
+        int spread = (free + 1) / 2;
+        for(int i = 0; i < spread; i++) {
+            plant(neighbours[i]);
+        }
+        if(spread > 0) {
+            SimulationEvents.birth(species, spread);
+        }
+        return spread;
+    }
+
+    /**
+     * Draw the number of patches skipped before the next one that spreads.
+     * @param rand The random generator.
+     * @param probability The probability that a patch spreads.
+     * @return The number of patches skipped, geometrically distributed.
+     */
+    private static long gap(RandomGenerator rand, double probability)
+    {
+        if(probability >= 1) {
+            return 0;
+        }
+        double draw = Math.log(1 - rand.nextDouble()) / Math.log(1 - probability);
+        return draw < Long.MAX_VALUE / 2 ? (long) draw : Long.MAX_VALUE / 2;
+    }
+
+    /**
+     * @param cell The index of a cell.
+     * @return true if the cell holds grass of this layer.
+     */
+    private boolean isGrass(int cell)
+    {
+        return field.getSpeciesAt(cell) == species && field.getTag(cell) >= 0;
+    }
+
+    /**
+     * @param cell The cell of a record.
+     * @param birth The growth at which the patch of the record appeared.
+     * @return true if the patch of the record is still in its cell.
+     */
+    private boolean isCurrent(int cell, long birth)
+    {
+        return isGrass(cell) && field.getTag(cell) == (int) (birth & Field.MAX_TAG);
+    }
+
+    /**
+     * Double the capacity of the record of patches.
+     */
+    private void grow()
+    {
+        int capacity = cells.length * 2;
+        int[] newCells = new int[capacity];
+        long[] newBirths = new long[capacity];
+        for(long record = head; record < tail; record++) {
+            int index = (int) (record & (cells.length - 1));
+            int newIndex = (int) (record & (capacity - 1));
+            newCells[newIndex] = cells[index];
+            newBirths[newIndex] = births[index];
+        }
+        cells = newCells;
+        births = newBirths;
+    }
+}
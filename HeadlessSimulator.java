@@ -0,0 +1,151 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import javax.management.JMException;
+
+/**
+ * Run the savanna simulation without any graphical view, e.g. on a
+ * server with no display. The simulation runs as fast as possible and
+ * only reports its status at a fixed interval.
+ *
+ * Usage: java HeadlessSimulator [depth width steps seed [interval [threads [port [world]]]]]
+ *
+ * With a number of threads, the field is updated tile by tile on that
+ * many threads; otherwise entities act one after the other.
+ *
+ * The time spent in each phase of the steps is printed at the end, and
+ * can be followed while the simulation runs through JMX. With a port, the
+ * metrics of the simulation are also served at http://localhost:port/metrics.
+ * A negative port serves no metrics.
+ *
+ * With a world file, the field is mapped from that file rather than kept
+ * on the heap: an existing world is taken up where it was left, and a new
+ * one of the given size is created and populated. The world is written
+ * back to the file at the end.
+ *
+ * @author Aymen Berbache and Aleks
+ * @version 2022.02
+ */
+public class HeadlessSimulator
+{
+    // The default depth of the grid.
+    private static final int DEFAULT_DEPTH = 115;
+    // The default width of the grid.
+    private static final int DEFAULT_WIDTH = 180;
+    // The default number of steps to run.
+    private static final int DEFAULT_STEPS = 1000;
+    // The default seed of the random generator.
+    private static final long DEFAULT_SEED = 1111;
+    // The default number of steps between two status reports.
+    private static final int DEFAULT_INTERVAL = 100;
+
+    /**
+     * Prints the status of the simulation every given number of steps.
+     */
+    private static class ConsoleObserver implements SimulatorObserver
+    {
+        // The number of steps between two reports.
+        private final int interval;
+        // Statistics computed for each report.
+        private final FieldStats stats;
+
+        /**
+         * @param interval The number of steps between two reports.
+         */
+        public ConsoleObserver(int interval)
+        {
+            this.interval = interval;
+            stats = new FieldStats();
+        }
+
+        public void showStatus(int step, Field field, String time, Weather weather, Disease disease)
+        {
+            if(interval > 0 && step % interval == 0) {
+                System.out.println("Step: " + step + " " + time + " "
+                        + stats.getPopulationDetails(field)
+                        + " Disease Deaths: " + disease.getDeaths());
+            }
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        int depth = DEFAULT_DEPTH;
+        int width = DEFAULT_WIDTH;
+        int steps = DEFAULT_STEPS;
+        long seed = DEFAULT_SEED;
+        int interval = DEFAULT_INTERVAL;
+        int threads = 0;
+        int port = -1;
+        Path file = null;
+        try {
+            if(args.length >= 4) {
+                depth = Integer.parseInt(args[0]);
+                width = Integer.parseInt(args[1]);
+                steps = Integer.parseInt(args[2]);
+                seed = Long.parseLong(args[3]);
+            }
+            if(args.length >= 5) {
+                interval = Integer.parseInt(args[4]);
+            }
+            if(args.length >= 6) {
+                threads = Integer.parseInt(args[5]);
+            }
+            if(args.length >= 7) {
+                port = Integer.parseInt(args[6]);
+            }
+            if(args.length >= 8) {
+                file = Path.of(args[7]);
+            }
+        }
+        catch(NumberFormatException e) {
+            System.out.println("Usage: java HeadlessSimulator [depth width steps seed [interval [threads [port [world]]]]]");
+            return;
+        }
+
+        Simulator simulator;
+        if(file != null) {
+            try {
+                simulator = new Simulator(file, depth, width, seed, Parameters.DEFAULTS);
+            }
+            catch(IOException e) {
+                System.out.println("The world could not be mapped: " + e.getMessage());
+                return;
+            }
+        }
+        else {
+            simulator = new Simulator(depth, width, false, seed);
+        }
+        simulator.addObserver(new ConsoleObserver(interval));
+        simulator.setParallelism(threads);
+        try {
+            simulator.getProfiler().register("headless");
+        }
+        catch(JMException e) {
+            System.out.println("The profiler could not be registered: " + e.getMessage());
+        }
+        MetricsServer metrics = null;
+        if(port >= 0) {
+            try {
+                metrics = new MetricsServer(simulator, port);
+                System.out.println("Serving metrics at http://localhost:" + metrics.getPort() + "/metrics");
+            }
+            catch(IOException e) {
+                System.out.println("The metrics server could not be started: " + e.getMessage());
+            }
+        }
+
+        long start = System.nanoTime();
+        simulator.simulate(steps);
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println("Ran " + simulator.getStep() + " steps in " + elapsed / 1_000_000 + " ms ("
+                + simulator.getEntityCount() + " entities).");
+        System.out.println("Time per phase (ns): " + simulator.getProfiler().getPhaseTotalNanos());
+        System.out.println("Act time per species, sampled (ns): " + simulator.getProfiler().getSpeciesActNanos());
+        simulator.setParallelism(0);
+        simulator.saveWorld();
+        if(metrics != null) {
+            metrics.stop();
+        }
+    }
+}
@@ -0,0 +1,303 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measure the hot methods of Field, Animal and Plant one at a time, each
+ * on a small field set up so that the neighbourhood of the entity under
+ * test is known. Every benchmark reports the time and the bytes allocated
+ * per call, so that a change in the step time can be traced to a method.
+ *
+ * The fixtures are chosen so that a call leaves the field as it found it:
+ * the hunter finds no prey, the infected animal has no neighbour of its
+ * species. Plant.createPlants does change the field, so its benchmark also
+ * counts clearing the new plants after each call.
+ *
+ * The methods of Animal and Plant are private; they are called through
+ * the package-private callHotPath of each class.
+ *
+ * Usage: java HotPathBenchmark [-warmup millis] [-time millis] [-iterations n]
+ *
+ * @author Aymen Berbache and Aleks
+ * @version 2022.02
+ */
+public class HotPathBenchmark
+{
+    // The number of calls between two readings of the clock.
+    private static final int BATCH = 1000;
+    // The size of the fixture fields; the entity under test is in the middle.
+    private static final int SIZE = 9;
+    private static final int MIDDLE = SIZE / 2;
+
+    // Collects the results of the calls, so that they are not optimised away.
+    private static long sink;
+
+    // The time spent warming up each benchmark, in milliseconds.
+    private long warmupMillis = 500;
+    // The duration of each measured iteration, in milliseconds.
+    private long iterationMillis = 200;
+    // The number of measured iterations.
+    private int iterations = 5;
+    // The results, as JSON objects.
+    private final List<String> results = new ArrayList<>();
+
+    /**
+     * A call to measure.
+     */
+    private interface Call
+    {
+        /**
+         * @return A value depending on the result of the call.
+         */
+        int run();
+    }
+
+    /**
+     * @return A fixture field with a fixed seed.
+     */
+    private static Field createField()
+    {
+        return new Field(SIZE, SIZE, new SimulationContext(1));
+    }
+
+    /**
+     * @param row The row offset from the middle.
+     * @param col The column offset from the middle.
+     * @return The location at that offset from the middle of a fixture field.
+     */
+    private static Location around(int row, int col)
+    {
+        return new Location(MIDDLE + row, MIDDLE + col);
+    }
+
+    /**
+     * @param field A fixture field.
+     * @param sex The sex of the zebra, 0 for female and 1 for male.
+     * @param location Where to place the zebra.
+     * @return A zebra of the given sex.
+     */
+    private static Zebra zebraOfSex(Field field, int sex, Location location)
+    {
+        Zebra zebra;
+        do {
+            zebra = new Zebra(false, field, location);
+        } while(zebra.callHotPath(Animal.GET_SEX) != sex);
+        return zebra;
+    }
+
+    /**
+     * Run all the benchmarks and print the results as JSON.
+     */
+    public void run()
+    {
+        benchmarkField();
+        benchmarkFindFood();
+        benchmarkCheckForAdjacentMales();
+        benchmarkSpreadDisease();
+        benchmarkCreatePlants();
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"java\": \"").append(System.getProperty("java.version"))
+            .append("\",\n  \"results\": [\n");
+        json.append(String.join(",\n", results));
+        json.append("\n  ]\n}");
+        System.out.println(json);
+    }
+
+    /**
+     * The neighbourhood queries of Field, around a cell with two animals,
+     * two plants and four free cells next to it.
+     */
+    private void benchmarkField()
+    {
+        Field field = createField();
+        new Zebra(false, field, around(-1, -1));
+        new Zebra(false, field, around(0, 1));
+        new Grass(field, around(1, 0));
+        new Grass(field, around(-1, 1));
+        Location location = around(0, 0);
+        int cell = field.getCell(location);
+        int[] cells = new int[Field.MAX_NEIGHBOURS];
+        String fixture = "2 animals, 2 plants, 4 free";
+
+        measure("Field.adjacentLocations", fixture, () -> field.adjacentLocations(location).size());
+        measure("Field.getFreeAdjacentLocations", fixture, () -> field.getFreeAdjacentLocations(location).size());
+        measure("Field.adjacentAnimals", fixture, () -> field.adjacentAnimals(location).size());
+        measure("Field.adjacentCells", fixture, () -> field.adjacentCells(cell, cells));
+        measure("Field.freeAdjacentCells", fixture, () -> field.freeAdjacentCells(cell, cells));
+        measure("Field.adjacentAnimalCells", fixture, () -> field.adjacentAnimalCells(cell, cells));
+    }
+
+    /**
+     * Animal.findFood for a lion surrounded by humans, which it does not
+     * eat, so that every neighbour is checked.
+     */
+    private void benchmarkFindFood()
+    {
+        Field field = createField();
+        Lion lion = new Lion(false, field, around(0, 0));
+        for(int row = -1; row <= 1; row++) {
+            for(int col = -1; col <= 1; col++) {
+                if(row != 0 || col != 0) {
+                    new Human(false, field, around(row, col));
+                }
+            }
+        }
+        measure("Animal.findFood", "8 neighbours, none edible", () -> lion.callHotPath(Animal.FIND_FOOD));
+    }
+
+    /**
+     * Animal.checkForAdjacentMales for a female zebra surrounded by
+     * females, then with a single male among them.
+     */
+    private void benchmarkCheckForAdjacentMales()
+    {
+        Field field = createField();
+        Zebra female = zebraOfSex(field, 0, around(0, 0));
+        for(int row = -1; row <= 1; row++) {
+            for(int col = -1; col <= 1; col++) {
+                if(row != 0 || col != 0) {
+                    zebraOfSex(field, 0, around(row, col));
+                }
+            }
+        }
+        measure("Animal.checkForAdjacentMales", "8 females",
+                () -> female.callHotPath(Animal.CHECK_FOR_ADJACENT_MALES));
+        zebraOfSex(field, 1, around(1, 1));
+        measure("Animal.checkForAdjacentMales", "7 females, 1 male",
+                () -> female.callHotPath(Animal.CHECK_FOR_ADJACENT_MALES));
+    }
+
+    /**
+     * Animal.spreadDisease for an infected human surrounded by lions, which
+     * cannot catch the disease from it, so that the field is unchanged.
+     */
+    private void benchmarkSpreadDisease()
+    {
+        Field field = createField();
+        Human human;
+        do {
+            human = new Human(false, field, around(0, 0));
+        } while(!human.isInfected());
+        for(int row = -1; row <= 1; row++) {
+            for(int col = -1; col <= 1; col++) {
+                if(row != 0 || col != 0) {
+                    new Lion(false, field, around(row, col));
+                }
+            }
+        }
+        Human carrier = human;
+        measure("Animal.spreadDisease", "infected, 8 animals of another species",
+                () -> carrier.callHotPath(Animal.SPREAD_DISEASE));
+    }
+
+    /**
+     * Plant.createPlants for grass with eight free cells around it. The new
+     * plants are cleared after each call.
+     */
+    private void benchmarkCreatePlants()
+    {
+        Field field = createField();
+        Grass grass = new Grass(field, around(0, 0));
+        List<Entity> newPlants = new ArrayList<>();
+        measure("Plant.createPlants", "8 free, cleared after each call", () -> {
+            int created = grass.callHotPath(newPlants);
+            for(Entity plant : newPlants) {
+                field.clear(plant.getCell());
+            }
+            newPlants.clear();
+            return created;
+        });
+    }
+
+    /**
+     * Warm up a call, then time it over several iterations.
+     * @param method The name of the method measured.
+     * @param fixture A description of the neighbourhood.
+     * @param call The call to measure.
+     */
+    private void measure(String method, String fixture, Call call)
+    {
+        long warmupEnd = System.nanoTime() + warmupMillis * 1_000_000;
+        while(System.nanoTime() < warmupEnd) {
+            runBatch(call);
+        }
+
+        double[] nanosPerCall = new double[iterations];
+        long calls = 0;
+        long allocatedBefore = allocatedBytes();
+        for(int iteration = 0; iteration < iterations; iteration++) {
+            long iterationCalls = 0;
+            long start = System.nanoTime();
+            long deadline = start + iterationMillis * 1_000_000;
+            long now;
+            do {
+                runBatch(call);
+                iterationCalls += BATCH;
+                now = System.nanoTime();
+            } while(now < deadline);
+            nanosPerCall[iteration] = (double) (now - start) / iterationCalls;
+            calls += iterationCalls;
+        }
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        double mean = 0;
+        for(double value : nanosPerCall) {
+            mean += value;
+        }
+        mean /= iterations;
+        double variance = 0;
+        for(double value : nanosPerCall) {
+            variance += (value - mean) * (value - mean);
+        }
+        double deviation = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0;
+
+        results.add(String.format(Locale.ROOT,
+                "    {\"method\": \"%s\", \"fixture\": \"%s\", \"calls\": %d,"
+                + " \"nanosPerCall\": %.2f, \"nanosPerCallDeviation\": %.2f, \"bytesPerCall\": %.2f}",
+                method, fixture, calls, mean, deviation, (double) allocated / calls));
+    }
+
+    /**
+     * @param call The call to run BATCH times.
+     */
+    private static void runBatch(Call call)
+    {
+        int sum = 0;
+        for(int i = 0; i < BATCH; i++) {
+            sum += call.run();
+        }
+        sink += sum;
+    }
+
+    /**
+     * @return The number of bytes allocated so far by this thread.
+     */
+    private static long allocatedBytes()
+    {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getCurrentThreadAllocatedBytes();
+    }
+
+    public static void main(String[] args)
+    {
+        HotPathBenchmark benchmark = new HotPathBenchmark();
+        for(int i = 0; i + 1 < args.length; i += 2) {
+            switch(args[i]) {
+                case "-warmup":
+                    benchmark.warmupMillis = Long.parseLong(args[i + 1]);
+                    break;
+                case "-time":
+                    benchmark.iterationMillis = Long.parseLong(args[i + 1]);
+                    break;
+                case "-iterations":
+                    benchmark.iterations = Math.max(1, Integer.parseInt(args[i + 1]));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        benchmark.run();
+    }
+}
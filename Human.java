@@ -1,4 +1,3 @@
-import java.util.Random;
 /**
  * A simple model of a tribal population.
  * Humans age, move, breed, eat, and die.
@@ -26,8 +25,8 @@ public class Human extends Predator
     private static final boolean IS_NOCTURNAL = false;
     // The infection probability of the animal.
     private static final double DISEASE_INFECTION_RATE = 0.095;
-    //A random Number to assign the human's age.
-    private static final Random rand = Randomizer.getRandom();
+    // The species code of the human.
+    private static final int SPECIES = Species.register(Human.class, preys);
 
     /**
      * Create a new human. A human may be created with age
@@ -42,11 +41,11 @@ public class Human extends Predator
         super(field, location);
         if(randomAge) {
             // We assume the simulation starts with a relatively young population.
-            age = rand.nextInt(MAX_AGE/2);
+            setAge(getContext().getRandom().nextInt(MAX_AGE/2));
             // food level initialized by Animal constructor
         }else{
-            // age =  0;  Implied by Entity constructor
-            foodLevel = 21;  //Initial food level of a newborn
+            // age =  0;  Implied by the AnimalTable
+            setFoodLevel(21);  //Initial food level of a newborn
         }
     }
 
@@ -129,4 +128,11 @@ public class Human extends Predator
         return DISEASE_INFECTION_RATE;
     }
 
+    /**
+     * @return The human species code
+     */
+    protected int getSPECIES()
+    {
+        return SPECIES;
+    }
 }
\ No newline at end of file
@@ -1,6 +1,3 @@
-
-import java.util.Random;
-
 /**
  * A simple model of a Lion.
  * Lions age, move, breed, eat, and die.
@@ -28,8 +25,8 @@ public class Lion extends Predator
     private static final boolean IS_NOCTURNAL = true;
     // The infection probability of the animal.
     private static final double DISEASE_INFECTION_RATE = 0.001;
-    // A shared random number generator to control breeding.
-    private static final Random rand = Randomizer.getRandom();
+    // The species code of the lion.
+    private static final int SPECIES = Species.register(Lion.class, preys);
 
     /**
      * Create a Lion. A Lion be created as a newborn (age zero
@@ -44,11 +41,11 @@ public class Lion extends Predator
         super(field, location);
         if(randomAge) {
             // We assume the simulation starts with a relatively young population.
-            age = rand.nextInt(MAX_AGE/2);
+            setAge(getContext().getRandom().nextInt(MAX_AGE/2));
             // food level initialized by Animal constructor
         }else{
-            // age =  0;  Implied by Entity constructor
-            foodLevel = 20;  //Initial food level of a newborn
+            // age =  0;  Implied by the AnimalTable
+            setFoodLevel(20);  //Initial food level of a newborn
         }
     }
 
@@ -124,4 +121,11 @@ public class Lion extends Predator
         return DISEASE_INFECTION_RATE;
     }
 
+    /**
+     * @return The lion species code
+     */
+    protected int getSPECIES()
+    {
+        return SPECIES;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,234 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A compact field whose packed cells live in a world file mapped into
+ * memory, rather than on the heap, so that the field may be larger than
+ * the heap. The file is mapped in pages of PAGE_CELLS cells; the pages
+ * not in use are left to the page cache of the operating system, which
+ * writes them back to the file and drops them as it sees fit. Only the
+ * objects of the occupied cells, e.g. the animals, are kept on the heap.
+ *
+ * The file starts with a header giving the size of the field, the
+ * growth of the simulation when it was last flushed, so that the ages of
+ * the grass of a GrassLayer can be told, and the names of the species in
+ * order of code. Cells follow, row by row, two bytes each.
+ *
+ * @author Aymen Berbache and Aleks
+ * @version 2022.02
+ */
+public class MappedField extends Field
+{
+    // The number of bits of a cell giving its index in its page.
+    public static final int PAGE_BITS = 20;
+    // The number of cells of a page.
+    public static final int PAGE_CELLS = 1 << PAGE_BITS;
+    // The first bytes of a world file.
+    private static final int MAGIC = 0x53564E41;
+    // The version of the layout of world files.
+    private static final int VERSION = 1;
+    // The number of bytes of the header, before the first cell.
+    private static final int HEADER_BYTES = 8192;
+    // The positions of the values of the header.
+    private static final int DEPTH = 8, WIDTH = 12, GROWTH = 16, SPECIES = 24;
+
+    // The header of the file.
+    private final MappedByteBuffer header;
+    // The pages of the file.
+    private final MappedByteBuffer[] buffers;
+    // The cells of each page.
+    private final ShortBuffer[] pages;
+    // Whether the file was created empty rather than opened.
+    private boolean created;
+
+    /**
+     * Map the cells of a world file.
+     * @param channel The channel of the file, open for reading and writing.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param context The simulation the field belongs to.
+     * @throws IOException If the file cannot be mapped.
+     */
+    private MappedField(FileChannel channel, int depth, int width, SimulationContext context)
+            throws IOException
+    {
+        super(depth, width, context, true, null);
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        int cells = depth * width;
+        int count = (cells + PAGE_CELLS - 1) >>> PAGE_BITS;
+        buffers = new MappedByteBuffer[count];
+        pages = new ShortBuffer[count];
+        for(int page = 0; page < count; page++) {
+            int length = Math.min(PAGE_CELLS, cells - (page << PAGE_BITS));
+            buffers[page] = channel.map(FileChannel.MapMode.READ_WRITE,
+                    HEADER_BYTES + 2L * (page << PAGE_BITS), 2L * length);
+            pages[page] = buffers[page].order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+        }
+    }
+
+    /**
+     * Create an empty world file of the given size and map it.
+     * @param file The world file, replaced if it exists.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param context The simulation the field belongs to.
+     * @return The field mapped from the file.
+     * @throws IOException If the file cannot be created or mapped.
+     */
+    public static MappedField create(Path file, int depth, int width, SimulationContext context)
+            throws IOException
+    {
+        if(depth <= 0 || width <= 0 || (long) depth * width > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cannot map a field of " + depth + " by " + width);
+        }
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The cells are zero, i.e. empty, until written.
+            channel.write(ByteBuffer.wrap(new byte[1]), HEADER_BYTES + 2L * depth * width - 1);
+            MappedField field = new MappedField(channel, depth, width, context);
+            field.header.putInt(0, MAGIC);
+            field.header.putInt(4, VERSION);
+            field.header.putInt(DEPTH, depth);
+            field.header.putInt(WIDTH, width);
+            field.created = true;
+            return field;
+        }
+    }
+
+    /**
+     * Map an existing world file. The species of the file are registered
+     * in the order of their codes, which must be those of this run.
+     * @param file The world file.
+     * @param context The simulation the field belongs to.
+     * @return The field mapped from the file.
+     * @throws IOException If the file cannot be mapped or is not a world file.
+     */
+    public static MappedField open(Path file, SimulationContext context) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer start = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(start, 0);
+            if(start.getInt(0) != MAGIC || start.getInt(4) != VERSION) {
+                throw new IOException("Not a world file: " + file);
+            }
+            int depth = start.getInt(DEPTH);
+            int width = start.getInt(WIDTH);
+            if(channel.size() < HEADER_BYTES + 2L * depth * width) {
+                throw new IOException("Truncated world file: " + file);
+            }
+            checkSpecies(start, file);
+            return new MappedField(channel, depth, width, context);
+        }
+    }
+
+    /**
+     * Register the species named in the header in the order of their
+     * codes, and check that they got the codes of the file.
+     * @param header The header of the file.
+     * @param file The world file.
+     * @throws IOException If a species is unknown or has another code.
+     */
+    private static void checkSpecies(ByteBuffer header, Path file) throws IOException
+    {
+        int position = SPECIES;
+        int count = header.getShort(position);
+        position += 2;
+        for(int code = 1; code < count; code++) {
+            byte[] name = new byte[header.getShort(position)];
+            header.get(position + 2, name);
+            position += 2 + name.length;
+            Class<?> type;
+            try {
+                type = Class.forName(new String(name, StandardCharsets.UTF_8));
+            }
+            catch(ClassNotFoundException e) {
+                throw new IOException("Unknown species in " + file + ": " + e.getMessage());
+            }
+            if(Species.codeOf(type) != code) {
+                throw new IOException("The species of " + file + " have other codes in this run: "
+                        + type.getName());
+            }
+        }
+    }
+
+    /**
+     * Write the growth of the simulation and the names of the species to
+     * the header, then write the changed pages back to the file.
+     */
+    public void flush()
+    {
+        header.putLong(GROWTH, getContext().getGrowth());
+        int position = SPECIES;
+        int count = Species.count();
+        header.putShort(position, (short) count);
+        position += 2;
+        for(int code = 1; code < count; code++) {
+            byte[] name = Species.getName(code).getBytes(StandardCharsets.UTF_8);
+            if(position + 2 + name.length > HEADER_BYTES) {
+                throw new IllegalStateException("Too many species to record in the header");
+            }
+            header.putShort(position, (short) name.length);
+            header.put(position + 2, name);
+            position += 2 + name.length;
+        }
+        header.force();
+        for(MappedByteBuffer buffer : buffers) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * @return The growth of the simulation when the file was last flushed.
+     */
+    public long getSavedGrowth()
+    {
+        return header.getLong(GROWTH);
+    }
+
+    /**
+     * @return true if the file was created empty rather than opened.
+     */
+    public boolean isNew()
+    {
+        return created;
+    }
+
+    /**
+     * @return The number of pages of the field.
+     */
+    public int getPageCount()
+    {
+        return pages.length;
+    }
+
+    @Override
+    protected int getPacked(int cell)
+    {
+        return pages[cell >>> PAGE_BITS].get(cell & (PAGE_CELLS - 1));
+    }
+
+    @Override
+    protected void setPacked(int cell, int packed)
+    {
+        pages[cell >>> PAGE_BITS].put(cell & (PAGE_CELLS - 1), (short) packed);
+    }
+
+    @Override
+    protected void clearCells()
+    {
+        short[] empty = new short[4096];
+        for(ShortBuffer page : pages) {
+            for(int index = 0; index < page.capacity(); index += empty.length) {
+                page.put(index, empty, 0, Math.min(empty.length, page.capacity() - index));
+            }
+        }
+    }
+}
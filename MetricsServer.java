@@ -0,0 +1,261 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Serve the metrics of a running simulation over HTTP, in the Prometheus
+ * text format, e.g. for a headless run lasting several hours:
+ * curl http://localhost:9404/metrics
+ *
+ * After each step the simulation thread publishes an immutable snapshot of
+ * its figures; a scrape only reads the latest snapshot, so it never waits
+ * for a step or holds one up. The heap and garbage collection figures are
+ * read from the JVM at scrape time. The server only listens on the
+ * loopback address, as the metrics are served without authentication.
+ *
+ * @author Aymen Berbache and Aleks
+ * @version 2022.02
+ */
+public class MetricsServer implements SimulatorObserver
+{
+    // The upper bounds of the buckets of the step duration histogram, in seconds.
+    private static final double[] BUCKETS =
+            {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5};
+    // The length of the window over which the step rate is computed, in nanoseconds.
+    private static final long RATE_WINDOW = 1_000_000_000L;
+
+    // The simulation whose metrics are served.
+    private final Simulator simulator;
+    // Computes the populations of the species.
+    private final FieldStats stats;
+    // The HTTP server.
+    private final HttpServer server;
+    // The latest snapshot, replaced after every step.
+    private volatile Snapshot snapshot;
+
+    // The following fields are only used on the thread running the simulation.
+    // The number of steps of each duration, per bucket; the last one has no bound.
+    private final long[] bucketCounts;
+    // The total duration of the steps, in nanoseconds.
+    private long durationSum;
+    // The number of steps measured.
+    private long durationCount;
+    // The start of the current rate window, and the step at that time.
+    private long windowStart;
+    private int windowStep;
+    // The step rate over the last complete window.
+    private double stepsPerSecond;
+
+    /**
+     * The figures of the simulation after a step. Never modified once published.
+     */
+    private static class Snapshot
+    {
+        // The step of the simulation and the recent step rate.
+        private final int step;
+        private final double stepsPerSecond;
+        // The step duration histogram: counts per bucket, total and number of steps.
+        private final long[] bucketCounts;
+        private final long durationSum;
+        private final long durationCount;
+        // The population of each species, by species code.
+        private final int[] populations;
+        // The number of disease deaths and of entities.
+        private final int diseaseDeaths;
+        private final int entities;
+
+        public Snapshot(int step, double stepsPerSecond, long[] bucketCounts, long durationSum,
+                        long durationCount, int[] populations, int diseaseDeaths, int entities)
+        {
+            this.step = step;
+            this.stepsPerSecond = stepsPerSecond;
+            this.bucketCounts = bucketCounts;
+            this.durationSum = durationSum;
+            this.durationCount = durationCount;
+            this.populations = populations;
+            this.diseaseDeaths = diseaseDeaths;
+            this.entities = entities;
+        }
+    }
+
+    /**
+     * Start serving the metrics of the simulation, and register as one of
+     * its observers.
+     * @param simulator The simulation whose metrics are served.
+     * @param port The port to listen on at the loopback address, zero for
+     *             any free port.
+     * @throws IOException If the server cannot be started.
+     */
+    public MetricsServer(Simulator simulator, int port) throws IOException
+    {
+        this.simulator = simulator;
+        stats = new FieldStats();
+        bucketCounts = new long[BUCKETS.length + 1];
+        windowStart = System.nanoTime();
+        windowStep = simulator.getStep();
+        snapshot = new Snapshot(simulator.getStep(), 0, bucketCounts.clone(), 0, 0,
+                                stats.getPopulations(simulator.getField()),
+                                simulator.getContext().getDisease().getDeaths(), simulator.getEntityCount());
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "Metrics");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        simulator.addObserver(this);
+    }
+
+    /**
+     * @return The port the server listens on.
+     */
+    public int getPort()
+    {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stop serving the metrics.
+     */
+    public void stop()
+    {
+        simulator.removeObserver(this);
+        server.stop(0);
+    }
+
+    /**
+     * Record the duration of the step and publish a new snapshot.
+     * Called on the thread running the simulation.
+     */
+    public void showStatus(int step, Field field, String time, Weather weather, Disease disease)
+    {
+        StepProfiler profiler = simulator.getProfiler();
+        long nanos = profiler.getLastNanos(StepProfiler.Phase.CLOCK)
+                + profiler.getLastNanos(StepProfiler.Phase.EXPIRE)
+                + profiler.getLastNanos(StepProfiler.Phase.ACT)
+                + profiler.getLastNanos(StepProfiler.Phase.REMOVE_DEAD)
+                + profiler.getLastNanos(StepProfiler.Phase.NEWBORNS);
+        int bucket = 0;
+        while(bucket < BUCKETS.length && nanos > BUCKETS[bucket] * 1e9) {
+            bucket++;
+        }
+        bucketCounts[bucket]++;
+        durationSum += nanos;
+        durationCount++;
+
+        long now = System.nanoTime();
+        if(step < windowStep) {
+            // The simulation was reset.
+            windowStart = now;
+            windowStep = step;
+        }
+        else if(now - windowStart >= RATE_WINDOW) {
+            stepsPerSecond = (step - windowStep) * 1e9 / (now - windowStart);
+            windowStart = now;
+            windowStep = step;
+        }
+
+        snapshot = new Snapshot(step, stepsPerSecond, bucketCounts.clone(), durationSum, durationCount,
+                                stats.getPopulations(field), disease.getDeaths(), simulator.getEntityCount());
+    }
+
+    /**
+     * Answer a scrape with the latest snapshot.
+     * @param exchange The HTTP request and response.
+     * @throws IOException If the response cannot be sent.
+     */
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        byte[] body = format(snapshot).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try(OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * @param current A snapshot.
+     * @return The snapshot and the JVM figures, in the Prometheus text format.
+     */
+    private static String format(Snapshot current)
+    {
+        StringBuilder text = new StringBuilder();
+        metric(text, "savanna_steps_total", "counter", "Steps simulated since the last reset.");
+        text.append("savanna_steps_total ").append(current.step).append('\n');
+        metric(text, "savanna_steps_per_second", "gauge", "Steps simulated per second, over the last second.");
+        text.append("savanna_steps_per_second ").append(number(current.stepsPerSecond)).append('\n');
+
+        metric(text, "savanna_step_duration_seconds", "histogram",
+               "Time spent updating the entities and the clock per step.");
+        long cumulative = 0;
+        for(int bucket = 0; bucket < BUCKETS.length; bucket++) {
+            cumulative += current.bucketCounts[bucket];
+            text.append("savanna_step_duration_seconds_bucket{le=\"").append(number(BUCKETS[bucket]))
+                .append("\"} ").append(cumulative).append('\n');
+        }
+        cumulative += current.bucketCounts[BUCKETS.length];
+        text.append("savanna_step_duration_seconds_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+        text.append("savanna_step_duration_seconds_sum ").append(number(current.durationSum / 1e9)).append('\n');
+        text.append("savanna_step_duration_seconds_count ").append(current.durationCount).append('\n');
+
+        metric(text, "savanna_population", "gauge", "Number of entities of each species.");
+        for(int code = 1; code < current.populations.length; code++) {
+            text.append("savanna_population{species=\"").append(Species.getName(code)).append("\"} ")
+                .append(current.populations[code]).append('\n');
+        }
+        metric(text, "savanna_disease_deaths_total", "counter", "Animals killed by the disease.");
+        text.append("savanna_disease_deaths_total ").append(current.diseaseDeaths).append('\n');
+        metric(text, "savanna_entities", "gauge", "Number of entities in the entity store.");
+        text.append("savanna_entities ").append(current.entities).append('\n');
+
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        metric(text, "jvm_memory_heap_bytes", "gauge", "Heap memory, by area.");
+        text.append("jvm_memory_heap_bytes{area=\"used\"} ").append(heap.getUsed()).append('\n');
+        text.append("jvm_memory_heap_bytes{area=\"committed\"} ").append(heap.getCommitted()).append('\n');
+        text.append("jvm_memory_heap_bytes{area=\"max\"} ").append(heap.getMax()).append('\n');
+        metric(text, "jvm_gc_collections_total", "counter", "Garbage collections, by collector.");
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            text.append("jvm_gc_collections_total{gc=\"").append(gc.getName()).append("\"} ")
+                .append(gc.getCollectionCount()).append('\n');
+        }
+        metric(text, "jvm_gc_collection_seconds_total", "counter", "Time spent in garbage collection, by collector.");
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            text.append("jvm_gc_collection_seconds_total{gc=\"").append(gc.getName()).append("\"} ")
+                .append(number(gc.getCollectionTime() / 1e3)).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Write the help and type lines of a metric.
+     * @param text The text to append to.
+     * @param name The name of the metric.
+     * @param type The Prometheus type of the metric.
+     * @param help A description of the metric.
+     */
+    private static void metric(StringBuilder text, String name, String type, String help)
+    {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * @param value A number.
+     * @return The number as written in the Prometheus text format.
+     */
+    private static String number(double value)
+    {
+        return Double.toString(value);
+    }
+}
@@ -0,0 +1,241 @@
+import java.util.Arrays;
+
+/**
+ * Map the occupied cells of a compact field to their occupants. Only the
+ * cells holding an object take room: the field is divided into square
+ * blocks of BLOCK_SIZE cells a side, and each block holding an object
+ * has its own open addressing hash table with linear probing, the cells
+ * and the occupants kept in two parallel arrays, so that no entry object
+ * is allocated.
+ *
+ * No lock is taken. The tiles of a TiledStepper are wider than a block,
+ * so the entities of tiles updated concurrently never reach cells of the
+ * same block, and each block is only used by one thread at a time.
+ *
+ * @author Aymen Berbache and Aleks
+ * @version 2022.02
+ */
+public class OccupantTable
+{
+    // The number of bits of a row or a column giving its place in its block.
+    private static final int BLOCK_BITS = 4;
+    // The width and depth of a block.
+    public static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    // The initial capacity of the table of a block, a power of two.
+    private static final int INITIAL_CAPACITY = 8;
+    // The key of a free slot.
+    private static final int FREE = -1;
+
+    /**
+     * The occupants of the cells of one block.
+     */
+    private static class Block
+    {
+        // The cell of each slot, FREE if the slot is free.
+        private int[] keys;
+        // The occupant of each slot.
+        private Object[] values;
+        // The number of occupied cells.
+        private int size;
+
+        /**
+         * Create an empty block.
+         */
+        public Block()
+        {
+            allocate(INITIAL_CAPACITY);
+        }
+
+        /**
+         * Replace the arrays with empty ones of the given capacity.
+         * @param capacity The new capacity, a power of two.
+         */
+        private void allocate(int capacity)
+        {
+            keys = new int[capacity];
+            Arrays.fill(keys, FREE);
+            values = new Object[capacity];
+        }
+    }
+
+    // The width of the field.
+    private final int width;
+    // The number of blocks in a row of blocks.
+    private final int blockCols;
+    // The blocks, row by row, null until an object is put in them.
+    private final Block[] blocks;
+
+    /**
+     * Create an empty table for a field of the given dimensions.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public OccupantTable(int depth, int width)
+    {
+        this.width = width;
+        blockCols = (width + BLOCK_SIZE - 1) >>> BLOCK_BITS;
+        int blockRows = (depth + BLOCK_SIZE - 1) >>> BLOCK_BITS;
+        blocks = new Block[blockRows * blockCols];
+    }
+
+    /**
+     * Forget every occupant.
+     */
+    public void clear()
+    {
+        Arrays.fill(blocks, null);
+    }
+
+    /**
+     * @return The number of occupied cells.
+     */
+    public int size()
+    {
+        int size = 0;
+        for(Block block : blocks) {
+            if(block != null) {
+                size += block.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Return the occupant of the given cell.
+     * @param cell The index of the cell.
+     * @return The occupant of the cell, or null if there is none.
+     */
+    public Object get(int cell)
+    {
+        Block block = blocks[blockOf(cell)];
+        if(block == null) {
+            return null;
+        }
+        int[] keys = block.keys;
+        int mask = keys.length - 1;
+        for(int slot = slotOf(cell, mask); keys[slot] != FREE; slot = (slot + 1) & mask) {
+            if(keys[slot] == cell) {
+                return block.values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Set the occupant of the given cell, replacing any previous one.
+     * @param cell The index of the cell.
+     * @param occupant The new occupant.
+     */
+    public void put(int cell, Object occupant)
+    {
+        int index = blockOf(cell);
+        Block block = blocks[index];
+        if(block == null) {
+            block = new Block();
+            blocks[index] = block;
+        }
+        int[] keys = block.keys;
+        int mask = keys.length - 1;
+        int slot = slotOf(cell, mask);
+        while(keys[slot] != FREE) {
+            if(keys[slot] == cell) {
+                block.values[slot] = occupant;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = cell;
+        block.values[slot] = occupant;
+        block.size++;
+        // Keep the table at most three quarters full.
+        if(block.size * 4 > keys.length * 3) {
+            rehash(block, keys.length * 2);
+        }
+    }
+
+    /**
+     * Remove the occupant of the given cell, if any.
+     * @param cell The index of the cell.
+     */
+    public void remove(int cell)
+    {
+        Block block = blocks[blockOf(cell)];
+        if(block == null) {
+            return;
+        }
+        int[] keys = block.keys;
+        Object[] values = block.values;
+        int mask = keys.length - 1;
+        int slot = slotOf(cell, mask);
+        while(keys[slot] != cell) {
+            if(keys[slot] == FREE) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        block.size--;
+        // Shift back the entries that follow, so that no probe sequence
+        // is broken by the free slot.
+        int next = slot;
+        while(true) {
+            next = (next + 1) & mask;
+            int key = keys[next];
+            if(key == FREE) {
+                break;
+            }
+            int home = slotOf(key, mask);
+            // Move the entry unless its home lies cyclically in (slot, next].
+            if(slot <= next ? (home <= slot || home > next) : (home <= slot && home > next)) {
+                keys[slot] = key;
+                values[slot] = values[next];
+                slot = next;
+            }
+        }
+        keys[slot] = FREE;
+        values[slot] = null;
+    }
+
+    /**
+     * @param cell The index of a cell.
+     * @return The index of the block holding the cell.
+     */
+    private int blockOf(int cell)
+    {
+        int row = cell / width;
+        int col = cell - row * width;
+        return (row >>> BLOCK_BITS) * blockCols + (col >>> BLOCK_BITS);
+    }
+
+    /**
+     * @param cell The index of a cell.
+     * @param mask The capacity of the table, minus one.
+     * @return The slot at which the search for the cell starts.
+     */
+    private static int slotOf(int cell, int mask)
+    {
+        return (cell * 0x9E3779B9 >>> 16 ^ cell * 0x9E3779B9) & mask;
+    }
+
+    /**
+     * Move every entry of a block into arrays of the given capacity.
+     * @param block The block.
+     * @param capacity The new capacity, a power of two.
+     */
+    private static void rehash(Block block, int capacity)
+    {
+        int[] oldKeys = block.keys;
+        Object[] oldValues = block.values;
+        block.allocate(capacity);
+        int mask = capacity - 1;
+        for(int i = 0; i < oldKeys.length; i++) {
+            if(oldKeys[i] != FREE) {
+                int slot = slotOf(oldKeys[i], mask);
+                while(block.keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                block.keys[slot] = oldKeys[i];
+                block.values[slot] = oldValues[i];
+            }
+        }
+    }
+}
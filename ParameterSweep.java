@@ -0,0 +1,349 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Run headless simulations for every combination of a grid of parameter
+ * values and a list of seeds, e.g. to calibrate the breeding probabilities
+ * of the species. Replicas are independent simulations and run on a
+ * bounded pool of threads. The population of every species is recorded
+ * at each step, and the final populations of the replicas of each
+ * combination are aggregated.
+ *
+ * Usage: java ParameterSweep steps depth width seed,seed,... [name=value,value,... ...]
+ * e.g. java ParameterSweep 500 115 180 1,2,3 Lion.BREEDING_PROBABILITY=0.4,0.6
+ *
+ * @author Aymen Berbache and Aleks
+ * @version 2022.02
+ */
+public class ParameterSweep
+{
+    // The values of each swept parameter, by name.
+    private final Map<String, double[]> grid;
+    // The seeds of the replicas of each combination.
+    private long[] seeds;
+    // The size of the field.
+    private final int depth, width;
+    // The number of steps of each run.
+    private final int steps;
+    // The number of runs executed at the same time.
+    private int threads;
+
+    /**
+     * The outcome of one simulation run.
+     */
+    public static class RunResult
+    {
+        // The parameters of the run.
+        private final Parameters parameters;
+        // The seed of the run.
+        private final long seed;
+        // The number of steps run before the simulation stopped.
+        private final int stepsRun;
+        // The population of each species at each step, by step and species code.
+        private final int[][] series;
+        // The number of deaths caused by the disease.
+        private final int diseaseDeaths;
+
+        /**
+         * @param parameters The parameters of the run.
+         * @param seed The seed of the run.
+         * @param stepsRun The number of steps run.
+         * @param series The population of each species at each step.
+         * @param diseaseDeaths The number of deaths caused by the disease.
+         */
+        public RunResult(Parameters parameters, long seed, int stepsRun, int[][] series, int diseaseDeaths)
+        {
+            this.parameters = parameters;
+            this.seed = seed;
+            this.stepsRun = stepsRun;
+            this.series = series;
+            this.diseaseDeaths = diseaseDeaths;
+        }
+
+        /**
+         * @return The parameters of the run.
+         */
+        public Parameters getParameters()
+        {
+            return parameters;
+        }
+
+        /**
+         * @return The seed of the run.
+         */
+        public long getSeed()
+        {
+            return seed;
+        }
+
+        /**
+         * @return The number of steps run before the simulation stopped.
+         */
+        public int getStepsRun()
+        {
+            return stepsRun;
+        }
+
+        /**
+         * @return The population of each species at each step, indexed by
+         * step (0 is the initial state) and species code.
+         */
+        public int[][] getSeries()
+        {
+            return series;
+        }
+
+        /**
+         * @return The population of each species at the end of the run.
+         */
+        public int[] getFinalPopulations()
+        {
+            return series[stepsRun];
+        }
+
+        /**
+         * @return The number of deaths caused by the disease.
+         */
+        public int getDiseaseDeaths()
+        {
+            return diseaseDeaths;
+        }
+    }
+
+    /**
+     * Records the population of every species after each step.
+     */
+    private static class PopulationRecorder implements SimulatorObserver
+    {
+        // The population of each species, by step and species code.
+        private final int[][] series;
+
+        /**
+         * @param steps The maximum number of steps.
+         */
+        public PopulationRecorder(int steps)
+        {
+            series = new int[steps + 1][];
+        }
+
+        public void showStatus(int step, Field field, String time, Weather weather, Disease disease)
+        {
+            int[] populations = new int[Species.count()];
+            for(int code = 1; code < populations.length; code++) {
+                populations[code] = field.getPopulation(code);
+            }
+            series[step] = populations;
+        }
+
+        /**
+         * @param stepsRun The number of steps recorded.
+         * @return The populations recorded, up to the given step.
+         */
+        public int[][] getSeries(int stepsRun)
+        {
+            return Arrays.copyOf(series, stepsRun + 1);
+        }
+    }
+
+    /**
+     * Create a sweep over simulations of the given size and length.
+     * @param depth Depth of the field.
+     * @param width Width of the field.
+     * @param steps The number of steps of each run.
+     */
+    public ParameterSweep(int depth, int width, int steps)
+    {
+        this.depth = depth;
+        this.width = width;
+        this.steps = steps;
+        grid = new LinkedHashMap<>();
+        seeds = new long[] { 1 };
+        threads = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Sweep a parameter over the given values.
+     * @param name The name of the parameter, see Parameters.
+     * @param values The values to try.
+     */
+    public void addParameter(String name, double... values)
+    {
+        grid.put(name, values.clone());
+    }
+
+    /**
+     * Set the seeds of the replicas of each combination.
+     * @param seeds The seeds.
+     */
+    public void setSeeds(long... seeds)
+    {
+        this.seeds = seeds.clone();
+    }
+
+    /**
+     * Set the number of runs executed at the same time.
+     * @param threads The number of threads, at least one.
+     */
+    public void setThreads(int threads)
+    {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * @return Every combination of the values of the swept parameters.
+     */
+    public List<Parameters> getCombinations()
+    {
+        List<Parameters> combinations = new ArrayList<>();
+        combinations.add(Parameters.DEFAULTS);
+        for(Map.Entry<String, double[]> axis : grid.entrySet()) {
+            List<Parameters> extended = new ArrayList<>();
+            for(Parameters combination : combinations) {
+                for(double value : axis.getValue()) {
+                    extended.add(combination.with(axis.getKey(), value));
+                }
+            }
+            combinations = extended;
+        }
+        return combinations;
+    }
+
+    /**
+     * Run every combination with every seed.
+     * @return The results, by combination then by seed.
+     * @throws InterruptedException If interrupted while waiting for the runs.
+     */
+    public List<RunResult> run() throws InterruptedException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<RunResult>> futures = new ArrayList<>();
+            for(Parameters parameters : getCombinations()) {
+                for(long seed : seeds) {
+                    futures.add(executor.submit(() -> runOne(parameters, seed)));
+                }
+            }
+            List<RunResult> results = new ArrayList<>();
+            for(Future<RunResult> future : futures) {
+                try {
+                    results.add(future.get());
+                }
+                catch(ExecutionException e) {
+                    throw new IllegalStateException("A simulation run failed.", e.getCause());
+                }
+            }
+            return results;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Run a single simulation.
+     * @param parameters The parameters of the run.
+     * @param seed The seed of the run.
+     * @return The outcome of the run.
+     */
+    private RunResult runOne(Parameters parameters, long seed)
+    {
+        Simulator simulator = new Simulator(depth, width, seed, parameters);
+        PopulationRecorder recorder = new PopulationRecorder(steps);
+        recorder.showStatus(0, simulator.getField(), null, null, null);
+        simulator.addObserver(recorder);
+        simulator.simulate(steps);
+        int stepsRun = simulator.getStep();
+        return new RunResult(parameters, seed, stepsRun, recorder.getSeries(stepsRun),
+                             simulator.getContext().getDisease().getDeaths());
+    }
+
+    /**
+     * Print one line per combination with the mean number of steps run,
+     * the mean disease deaths and the mean and standard deviation of the
+     * final population of each species, as comma separated values.
+     * @param results The results of a sweep.
+     */
+    public void printSummary(List<RunResult> results)
+    {
+        StringBuilder header = new StringBuilder();
+        for(String name : grid.keySet()) {
+            header.append(name).append(',');
+        }
+        header.append("runs,steps,disease deaths");
+        int species = Species.count();
+        for(int code = 1; code < species; code++) {
+            header.append(',').append(Species.getName(code)).append(" mean,")
+                  .append(Species.getName(code)).append(" sd");
+        }
+        System.out.println(header);
+
+        int replicas = seeds.length;
+        for(int first = 0; first < results.size(); first += replicas) {
+            List<RunResult> group = results.subList(first, first + replicas);
+            StringBuilder line = new StringBuilder();
+            Parameters parameters = group.get(0).getParameters();
+            for(String name : grid.keySet()) {
+                line.append(parameters.get(name, Double.NaN)).append(',');
+            }
+            double stepsRun = 0;
+            double deaths = 0;
+            for(RunResult result : group) {
+                stepsRun += result.getStepsRun();
+                deaths += result.getDiseaseDeaths();
+            }
+            line.append(replicas).append(',').append(stepsRun / replicas)
+                .append(',').append(deaths / replicas);
+            for(int code = 1; code < species; code++) {
+                double sum = 0;
+                double squares = 0;
+                for(RunResult result : group) {
+                    int[] populations = result.getFinalPopulations();
+                    double population = code < populations.length ? populations[code] : 0;
+                    sum += population;
+                    squares += population * population;
+                }
+                double mean = sum / replicas;
+                double variance = Math.max(0, squares / replicas - mean * mean);
+                line.append(',').append(mean).append(',').append(Math.sqrt(variance));
+            }
+            System.out.println(line);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        String usage = "Usage: java ParameterSweep steps depth width seed,seed,... [name=value,value,... ...]";
+        if(args.length < 4) {
+            System.out.println(usage);
+            return;
+        }
+        ParameterSweep sweep = new ParameterSweep(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                                                  Integer.parseInt(args[0]));
+        sweep.setSeeds(Arrays.stream(args[3].split(",")).mapToLong(Long::parseLong).toArray());
+        for(int i = 4; i < args.length; i++) {
+            String[] parts = args[i].split("=", 2);
+            double[] values = parts.length == 2
+                ? Arrays.stream(parts[1].split(",")).filter(value -> !value.isEmpty())
+                        .mapToDouble(Double::parseDouble).toArray()
+                : new double[0];
+            if(values.length == 0) {
+                System.out.println(usage);
+                return;
+            }
+            sweep.addParameter(parts[0], values);
+        }
+
+        long start = System.nanoTime();
+        List<RunResult> results = sweep.run();
+        sweep.printSummary(results);
+        System.out.println("Ran " + results.size() + " simulations in "
+                           + (System.nanoTime() - start) / 1_000_000 + " ms.");
+    }
+}
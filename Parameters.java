@@ -0,0 +1,190 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The tunable constants of a simulation. By default every species uses
+ * the constants of its class; a parameter set overrides some of them for
+ * one simulation only, so several calibration runs with different values
+ * can share the same program.
+ *
+ * Species parameters are named after the class and the constant, e.g.
+ * "Lion.BREEDING_PROBABILITY" or "Zebra.MAX_LITTER_SIZE". Creation
+ * probabilities keep the names of the Simulator constants, e.g.
+ * "ZEBRA_CREATION_PROBABILITY". "CREATION_DENSITY" scales every creation
+ * probability at once. A non-zero "GRASS_LAYER" keeps the grass in a
+ * GrassLayer instead of Grass objects, and a non-zero "COMPACT_FIELD"
+ * keeps only the occupied cells of the field.
+ *
+ * @author Aymen Berbache and Aleks
+ * @version 2022.02
+ */
+public class Parameters
+{
+    // The species constants that can be overridden.
+    public static final String BREEDING_PROBABILITY = "BREEDING_PROBABILITY";
+    public static final String MAX_LITTER_SIZE = "MAX_LITTER_SIZE";
+    public static final String BREEDING_AGE = "BREEDING_AGE";
+    public static final String SPREADING_PROBABILITY = "SPREADING_PROBABILITY";
+    // The suffix of the names of creation probabilities.
+    public static final String CREATION_PROBABILITY = "_CREATION_PROBABILITY";
+    // The factor applied to every creation probability.
+    public static final String CREATION_DENSITY = "CREATION_DENSITY";
+    // Whether the grass is kept in a GrassLayer, non-zero if so.
+    public static final String GRASS_LAYER = "GRASS_LAYER";
+    // Whether the field keeps only its occupied cells, non-zero if so.
+    public static final String COMPACT_FIELD = "COMPACT_FIELD";
+    // The species constants, in the order of the lookup tables.
+    private static final String[] SPECIES_CONSTANTS =
+            {BREEDING_PROBABILITY, MAX_LITTER_SIZE, BREEDING_AGE, SPREADING_PROBABILITY};
+
+    // The parameters of a simulation that uses the class constants only.
+    public static final Parameters DEFAULTS = new Parameters(new TreeMap<>());
+
+    // The overridden values, by name.
+    private final Map<String, Double> values;
+    // The overridden species constants, by constant and species code; NaN if not overridden.
+    private final double[][] speciesValues;
+
+    /**
+     * Create a parameter set from the given values.
+     * @param values The overridden values, by name.
+     */
+    private Parameters(Map<String, Double> values)
+    {
+        this.values = Collections.unmodifiableMap(values);
+        speciesValues = new double[SPECIES_CONSTANTS.length][Species.MAX_SPECIES + 1];
+        for(double[] table : speciesValues) {
+            Arrays.fill(table, Double.NaN);
+        }
+        for(Map.Entry<String, Double> entry : values.entrySet()) {
+            String name = entry.getKey();
+            int dot = name.indexOf('.');
+            if(dot >= 0) {
+                int constant = Arrays.asList(SPECIES_CONSTANTS).indexOf(name.substring(dot + 1));
+                if(constant < 0) {
+                    throw new IllegalArgumentException("Unknown parameter: " + name);
+                }
+                speciesValues[constant][speciesCode(name.substring(0, dot))] = entry.getValue();
+            }
+            else if(!name.endsWith(CREATION_PROBABILITY) && !name.equals(CREATION_DENSITY)
+                    && !name.equals(GRASS_LAYER) && !name.equals(COMPACT_FIELD)) {
+                throw new IllegalArgumentException("Unknown parameter: " + name);
+            }
+        }
+    }
+
+    /**
+     * Find the code of a species from the name of its class. The class is
+     * loaded if needed, which registers the species.
+     * @param className The name of the class of the species.
+     * @return The code of the species.
+     */
+    private static int speciesCode(String className)
+    {
+        try {
+            Class<?> type = Class.forName(className);
+            int code = Species.codeOf(type);
+            if(code == Species.NONE) {
+                throw new IllegalArgumentException("Not a species: " + className);
+            }
+            return code;
+        }
+        catch(ClassNotFoundException e) {
+            throw new IllegalArgumentException("Unknown species: " + className, e);
+        }
+    }
+
+    /**
+     * Return a copy of this parameter set with one more value overridden.
+     * @param name The name of the parameter.
+     * @param value Its value.
+     * @return The new parameter set.
+     */
+    public Parameters with(String name, double value)
+    {
+        Map<String, Double> newValues = new TreeMap<>(values);
+        newValues.put(name, value);
+        return new Parameters(newValues);
+    }
+
+    /**
+     * @param name The name of a parameter.
+     * @param defaultValue The value to use if it is not overridden.
+     * @return The value of the parameter.
+     */
+    public double get(String name, double defaultValue)
+    {
+        Double value = values.get(name);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * @param species The code of a species.
+     * @param defaultValue The breeding probability of its class.
+     * @return The breeding probability of the species.
+     */
+    public double getBreedingProbability(int species, double defaultValue)
+    {
+        return speciesValue(0, species, defaultValue);
+    }
+
+    /**
+     * @param species The code of a species.
+     * @param defaultValue The maximum litter size of its class.
+     * @return The maximum litter size of the species.
+     */
+    public int getMaxLitterSize(int species, int defaultValue)
+    {
+        return (int) speciesValue(1, species, defaultValue);
+    }
+
+    /**
+     * @param species The code of a species.
+     * @param defaultValue The breeding age of its class.
+     * @return The breeding age of the species.
+     */
+    public int getBreedingAge(int species, int defaultValue)
+    {
+        return (int) speciesValue(2, species, defaultValue);
+    }
+
+    /**
+     * @param species The code of a species.
+     * @param defaultValue The spreading probability of its class.
+     * @return The spreading probability of the species.
+     */
+    public double getSpreadingProbability(int species, double defaultValue)
+    {
+        return speciesValue(3, species, defaultValue);
+    }
+
+    /**
+     * @param constant The index of the constant in the lookup tables.
+     * @param species The code of a species.
+     * @param defaultValue The value of the class constant.
+     * @return The overridden value, or the default one.
+     */
+    private double speciesValue(int constant, int species, double defaultValue)
+    {
+        double value = speciesValues[constant][species];
+        return Double.isNaN(value) ? defaultValue : value;
+    }
+
+    /**
+     * @return The overridden values, by name.
+     */
+    public Map<String, Double> getValues()
+    {
+        return values;
+    }
+
+    /**
+     * @return A string of the form name=value, one per overridden value.
+     */
+    public String toString()
+    {
+        return values.toString();
+    }
+}
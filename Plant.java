@@ -1,5 +1,4 @@
 import java.util.List;
-import java.util.Random;
 
 /**
  * A class defining the behavior of plants.
@@ -10,8 +9,9 @@ import java.util.Random;
  */
 public abstract class Plant extends Entity {
 
-    //A shared random number generator to control the plant spreading
-    private static final Random rand = Randomizer.getRandom();
+    // Buffers receiving the free cells adjacent to the spreading plant, one per thread.
+    private static final ThreadLocal<int[]> buffers =
+            ThreadLocal.withInitial(() -> new int[Field.MAX_NEIGHBOURS]);
 
     /**
      * Create a new plant at a location in the field
@@ -27,17 +27,24 @@ public abstract class Plant extends Entity {
      * @param newPlants A list that holds the newly created plants.
      */
     public void act(List<Entity> newPlants) {
-        incrementAge();
-        // Plants grow two times more when it's rainy.
-        if (Simulator.weather.isRainy()) {
-            incrementAge();
-        }
+        SimulationContext context = getContext();
         // Plants spread randomly
-        if (isAlive() && rand.nextDouble() <= getWindySpreadingProbability()) {
+        if (isAlive() && context.getRandom().nextDouble() <= getWindySpreadingProbability()) {
             createPlants(newPlants);
         }
     }
 
+    /**
+     * Schedule the plant to wither once the plants have grown by more
+     * than its maximum age since it appeared. Plants grow two times more
+     * when it's rainy, so the step at which it withers is not known yet.
+     */
+    protected void scheduleDeath()
+    {
+        SimulationContext context = getContext();
+        context.getWitherings().schedule(this, context.getGrowth() + getMAX_AGE() + 1);
+    }
+
     /**
      * A plant has a probability of spreading to an adjacent location in the simulation
      * @param newPlants A list of new plants
@@ -45,13 +52,29 @@ public abstract class Plant extends Entity {
     private void createPlants(List<Entity> newPlants){
 
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
-        for(int newPlant = 0; newPlant < free.size(); newPlant++) {
-            Location loc = free.remove(0);
-            Plant newP = newPlantObject(field, loc);
+        int[] neighbours = buffers.get();
+        int free = field.freeAdjacentCells(getCell(), neighbours);
+        // A plant spreads to half of the free adjacent locations.
+        int spread = (free + 1) / 2;
+        for(int newPlant = 0; newPlant < spread; newPlant++) {
+            Plant newP = newPlantObject(field, field.getLocation(neighbours[newPlant]));
             newPlants.add(newP);
         }
+        if(spread > 0) {
+            SimulationEvents.birth(getSpecies(), spread);
+        }
+
+    }
 
+    /**
+     * Call createPlants, so that HotPathBenchmark can time it.
+     * @param newPlants A list that receives the new plants.
+     * @return The number of new plants.
+     */
+    int callHotPath(List<Entity> newPlants)
+    {
+        createPlants(newPlants);
+        return newPlants.size();
     }
 
     /**
@@ -59,10 +82,12 @@ public abstract class Plant extends Entity {
      * If there is wind, plants are more likely to spread.
      */
     private double getWindySpreadingProbability(){
-        if(Simulator.weather.isWindy()){
-            return getSPREADING_PROBABILITY()*2;
+        double probability = getContext().getParameters()
+                .getSpreadingProbability(getSpecies(), getSPREADING_PROBABILITY());
+        if(getContext().getWeather().isWindy()){
+            return probability*2;
         }else{
-            return getSPREADING_PROBABILITY();
+            return probability;
         }
     }
 
@@ -1,10 +1,16 @@
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
 
 /**
  * Provide control over the randomization of the simulation. By using the shared, fixed-seed 
  * randomizer, repeated runs will perform exactly the same (which helps with testing). Set 
  * 'useShared' to false to get different random behaviour every time.
  *
+ * Besides the shared generator, the randomizer hands out independent streams keyed by
+ * a seed, a step and a key such as a tile or an entity. A stream depends on its keys
+ * only, so work split between threads draws the same numbers whatever the threads.
+ * Streams are SplittableRandom generators, which share no state and need no locking.
+ *
  * @author Aymen Berbache and Aleks
  * @version 2022.02
  */
@@ -12,10 +18,14 @@ public class Randomizer
 {
     // The default seed for control of randomization.
     private static final int SEED = 1111;
-    // A shared Random object, if required.
-    private static final Random rand = new Random(SEED);
+    // The seed of the shared generator.
+    private static long seed = SEED;
+    // A shared random generator, if required.
+    private static SplittableRandom rand = new SplittableRandom(SEED);
     // Determine whether a shared random generator is to be provided.
     private static final boolean useShared = true;
+    // A random generator bound to the current thread, used instead of the shared one.
+    private static final ThreadLocal<RandomGenerator> bound = new ThreadLocal<>();
 
     /**
      * Constructor for objects of class Randomizer
@@ -25,18 +35,87 @@ public class Randomizer
     }
 
     /**
-     * Provide a random generator.
-     * @return A random object.
+     * Provide a random generator. The generator must not be kept, as it
+     * changes when the randomization is reset or a stream is bound.
+     * @return A random generator.
      */
-    public static Random getRandom()
+    public static RandomGenerator getRandom()
     {
+        RandomGenerator local = bound.get();
+        if(local != null) {
+            return local;
+        }
         if(useShared) {
             return rand;
         }
         else {
-            return new Random();
+            return new SplittableRandom();
         }
     }
+
+    /**
+     * Provide an independent stream of random numbers for the given keys.
+     * The same keys always give the same stream.
+     * @param seed The seed of the run.
+     * @param step The number of the step.
+     * @param key The key of the stream within the step, e.g. a tile or an entity.
+     * @return A new random generator.
+     */
+    public static RandomGenerator stream(long seed, long step, long key)
+    {
+        long mixed = mix(seed);
+        mixed = mix(mixed + 0x9E3779B97F4A7C15L * (step + 1));
+        mixed = mix(mixed + 0x9E3779B97F4A7C15L * (key + 1));
+        return new SplittableRandom(mixed);
+    }
+
+    /**
+     * Scramble the bits of a value (the finaliser of SplitMix64).
+     * @param value The value to scramble.
+     * @return The scrambled value.
+     */
+    private static long mix(long value)
+    {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * Bind a random generator to the current thread. Until it is unbound,
+     * getRandom returns it to this thread instead of the shared one.
+     * This lets parts of a step run on other threads and still draw
+     * reproducible numbers.
+     * @param random The generator to bind, or null to unbind.
+     * @return The generator previously bound, or null if there was none.
+     */
+    public static RandomGenerator bind(RandomGenerator random)
+    {
+        RandomGenerator previous = bound.get();
+        if(random == null) {
+            bound.remove();
+        }
+        else {
+            bound.set(random);
+        }
+        return previous;
+    }
+
+    /**
+     * @return The generator bound to the current thread, or null if there is none.
+     */
+    public static RandomGenerator getBound()
+    {
+        return bound.get();
+    }
+
+    /**
+     * @return The seed of the shared generator.
+     */
+    public static long getSeed()
+    {
+        return seed;
+    }
     
     /**
      * Reset the randomization.
@@ -44,9 +123,22 @@ public class Randomizer
      * a shared Random generator.
      */
     public static void reset()
+    {
+        reset(SEED);
+    }
+
+    /**
+     * Reset the randomization with the given seed, so that a run
+     * can be repeated exactly.
+     * This will have no effect if randomization is not through
+     * a shared Random generator.
+     * @param seed The seed to use.
+     */
+    public static void reset(long seed)
     {
         if(useShared) {
-            rand.setSeed(SEED);
+            Randomizer.seed = seed;
+            rand = new SplittableRandom(seed);
         }
     }
-}
\ No newline at end of file
+}
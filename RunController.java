@@ -0,0 +1,284 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run a simulation on its own thread, step after step, until it is paused
+ * or stops being viable. Every step, reset and pause is carried out on
+ * that single thread, in the order requested, so the controller can be
+ * driven from the buttons of the view without any other synchronisation.
+ *
+ * Three modes are supported:
+ * FIXED_RATE runs a given number of steps per second and shows each one.
+ * MAX_THROUGHPUT runs steps back to back and only shows one step in every
+ * given number. SOFT_REAL_TIME runs at the given rate, but shows fewer
+ * steps while a step overruns its share of a second, and more again once
+ * steps fit comfortably.
+ *
+ * @author Aymen Berbache and Aleks
+ * @version 2022.02
+ */
+public class RunController
+{
+    /**
+     * The ways of scheduling the steps of a run.
+     */
+    public enum Mode
+    {
+        FIXED_RATE, MAX_THROUGHPUT, SOFT_REAL_TIME
+    }
+
+    // The default number of steps per second.
+    public static final int DEFAULT_STEPS_PER_SECOND = 100;
+    // The default number of steps between two steps shown in MAX_THROUGHPUT mode.
+    public static final int DEFAULT_RENDER_INTERVAL = 10;
+    // The largest number of steps between two steps shown in SOFT_REAL_TIME mode.
+    private static final int MAX_RENDER_INTERVAL = 64;
+
+    // The simulation being run.
+    private final Simulator simulator;
+    // The thread running the simulation.
+    private final ScheduledExecutorService executor;
+    // The current mode.
+    private volatile Mode mode = Mode.FIXED_RATE;
+    // The number of steps per second in FIXED_RATE and SOFT_REAL_TIME modes.
+    private volatile int stepsPerSecond = DEFAULT_STEPS_PER_SECOND;
+    // The number of steps between two steps shown in MAX_THROUGHPUT mode.
+    private volatile int renderInterval = DEFAULT_RENDER_INTERVAL;
+    // Whether the simulation is running.
+    private volatile boolean running;
+    // Incremented on every start and pause, so that the tasks of an earlier run stop.
+    private volatile int generation;
+    // The steps scheduled at a fixed rate, null if none.
+    private ScheduledFuture<?> scheduled;
+
+    // The following fields are only used on the thread running the simulation.
+    // The number of steps run since the last step shown.
+    private int unshown;
+    // The number of steps between two steps shown in SOFT_REAL_TIME mode.
+    private int adaptiveInterval = 1;
+
+    /**
+     * Create a paused controller for the given simulation.
+     * @param simulator The simulation to run.
+     */
+    public RunController(Simulator simulator)
+    {
+        this.simulator = simulator;
+        executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "Simulation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Set the way the steps are scheduled. Takes effect on the next start.
+     * @param mode The new mode.
+     */
+    public void setMode(Mode mode)
+    {
+        this.mode = mode;
+    }
+
+    /**
+     * @return The way the steps are scheduled.
+     */
+    public Mode getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * Set the number of steps per second of the FIXED_RATE and
+     * SOFT_REAL_TIME modes. Takes effect on the next start.
+     * @param stepsPerSecond The number of steps per second, at least one.
+     */
+    public void setStepsPerSecond(int stepsPerSecond)
+    {
+        this.stepsPerSecond = Math.max(1, stepsPerSecond);
+    }
+
+    /**
+     * Set how often a step is shown in MAX_THROUGHPUT mode.
+     * @param renderInterval Show one step in this many, at least one.
+     */
+    public void setRenderInterval(int renderInterval)
+    {
+        this.renderInterval = Math.max(1, renderInterval);
+    }
+
+    /**
+     * @return true if the simulation is running.
+     */
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * Start running the simulation, or resume it, in the current mode.
+     * Nothing happens if it is already running.
+     */
+    public synchronized void resume()
+    {
+        if(running) {
+            return;
+        }
+        running = true;
+        int current = ++generation;
+        if(mode == Mode.MAX_THROUGHPUT) {
+            executor.execute(() -> runContinuously(current));
+        }
+        else {
+            long period = TimeUnit.SECONDS.toNanos(1) / stepsPerSecond;
+            scheduled = executor.scheduleAtFixedRate(() -> runScheduled(current), 0, period,
+                                                     TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Pause the simulation after the step in progress, if any, and show
+     * its state.
+     */
+    public synchronized void pause()
+    {
+        if(!running) {
+            return;
+        }
+        stopRun();
+        executor.execute(this::showUnshown);
+    }
+
+    /**
+     * Run a single step and show it, once the simulation is paused.
+     * The simulation is paused first if it is running.
+     */
+    public synchronized void step()
+    {
+        if(running) {
+            stopRun();
+        }
+        // The step shows the state, including any steps left unshown by the run.
+        executor.execute(() -> {
+            simulator.simulateOneStep();
+            unshown = 0;
+        });
+    }
+
+    /**
+     * Pause the simulation and reset it to a starting position.
+     */
+    public synchronized void reset()
+    {
+        if(running) {
+            stopRun();
+        }
+        executor.execute(() -> {
+            simulator.reset();
+            unshown = 0;
+        });
+    }
+
+    /**
+     * Pause the simulation and stop its thread.
+     */
+    public synchronized void shutdown()
+    {
+        if(running) {
+            stopRun();
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Stop the tasks of the current run.
+     */
+    private void stopRun()
+    {
+        running = false;
+        generation++;
+        if(scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+    }
+
+    /**
+     * Run steps back to back, a step per task so that other requests are
+     * carried out in between.
+     * @param current The generation of the run.
+     */
+    private void runContinuously(int current)
+    {
+        if(current != generation) {
+            return;
+        }
+        if(runStep(renderInterval)) {
+            executor.execute(() -> runContinuously(current));
+        }
+    }
+
+    /**
+     * Run one step of a run scheduled at a fixed rate.
+     * @param current The generation of the run.
+     */
+    private void runScheduled(int current)
+    {
+        if(current != generation) {
+            return;
+        }
+        if(mode != Mode.SOFT_REAL_TIME) {
+            runStep(1);
+            return;
+        }
+        long budget = TimeUnit.SECONDS.toNanos(1) / stepsPerSecond;
+        long start = System.nanoTime();
+        runStep(adaptiveInterval);
+        long elapsed = System.nanoTime() - start;
+        if(elapsed > budget) {
+            // Overrun: show fewer steps.
+            adaptiveInterval = Math.min(MAX_RENDER_INTERVAL, adaptiveInterval * 2);
+        }
+        else if(elapsed < budget / 2) {
+            // Plenty of time left: show more steps.
+            adaptiveInterval = Math.max(1, adaptiveInterval / 2);
+        }
+    }
+
+    /**
+     * Run one step, showing it if enough steps were run since the last
+     * one shown. The run is paused once the simulation stops being viable.
+     * @param interval Show one step in this many.
+     * @return true if the run goes on.
+     */
+    private boolean runStep(int interval)
+    {
+        unshown++;
+        boolean show = unshown >= interval;
+        simulator.simulateOneStep(show);
+        if(show) {
+            unshown = 0;
+        }
+        if(!simulator.isViable()) {
+            synchronized(this) {
+                stopRun();
+            }
+            showUnshown();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Show the state of the simulation if the last step run was not shown.
+     */
+    private void showUnshown()
+    {
+        if(unshown > 0) {
+            simulator.notifyObservers();
+            unshown = 0;
+        }
+    }
+}
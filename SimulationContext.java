@@ -0,0 +1,208 @@
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * The state shared by all the entities of one simulation: the clock,
+ * the weather, the disease, the random generator, the parameters, the
+ * state of the animals and the schedule of the deaths of old age.
+ * The context travels with the field, so several simulations can run
+ * side by side in the same program without interfering.
+ *
+ * @author Aymen Berbache and Aleks
+ * @version 2022.02
+ */
+public class SimulationContext
+{
+    // The virality of the disease of a new simulation.
+    private static final double DISEASE_VIRALITY = 0.05;
+    // The virulence of the disease of a new simulation.
+    private static final int DISEASE_VIRULENCE = 10;
+
+    // The seed of the random generator.
+    private final long seed;
+    // The random generator of the simulation.
+    private final SplittableRandom rand;
+    // An object that tracks day/night cycles.
+    private final Time time;
+    // An object that tracks the weather.
+    private final Weather weather;
+    // The disease spreading in the simulation.
+    private final Disease disease;
+    // The constants overridden for this simulation.
+    private final Parameters parameters;
+    // The current step of the simulation.
+    private int step;
+    // The growth of the plants since step zero: one per step, two when it rains.
+    private long growth;
+    // The animals, by the step at which they die of old age or of the disease.
+    private final TimerWheel<Entity> deaths;
+    // The plants, by the growth at which they wither.
+    private final TimerWheel<Entity> witherings;
+    // The age, food level and flags of the animals.
+    private final AnimalTable animals;
+
+    /**
+     * Create a context whose random generator is seeded from the shared one.
+     */
+    public SimulationContext()
+    {
+        this(Randomizer.getRandom().nextLong());
+    }
+
+    /**
+     * Create a context with the given seed. Two contexts with the same
+     * seed give the same simulation.
+     * @param seed The seed of the random generator.
+     */
+    public SimulationContext(long seed)
+    {
+        this(seed, Parameters.DEFAULTS);
+    }
+
+    /**
+     * Create a context with the given seed and parameters.
+     * @param seed The seed of the random generator.
+     * @param parameters The constants overridden for this simulation.
+     */
+    public SimulationContext(long seed, Parameters parameters)
+    {
+        this.seed = seed;
+        this.parameters = parameters;
+        rand = new SplittableRandom(seed);
+        time = new Time();
+        weather = new Weather(this);
+        disease = new Disease(DISEASE_VIRALITY, DISEASE_VIRULENCE);
+        deaths = new TimerWheel<>();
+        witherings = new TimerWheel<>();
+        animals = new AnimalTable(this);
+        step = 0;
+        growth = 0;
+    }
+
+    /**
+     * Provide the random generator to draw from. While part of a step
+     * runs on another thread with its own stream bound, that stream is
+     * returned instead. The generator must not be kept.
+     * @return A random generator.
+     */
+    public RandomGenerator getRandom()
+    {
+        RandomGenerator local = Randomizer.getBound();
+        if(local != null) {
+            return local;
+        }
+        return rand;
+    }
+
+    /**
+     * @return The seed of the random generator.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * @return The day/night cycle.
+     */
+    public Time getTime()
+    {
+        return time;
+    }
+
+    /**
+     * @return The weather.
+     */
+    public Weather getWeather()
+    {
+        return weather;
+    }
+
+    /**
+     * @return The disease.
+     */
+    public Disease getDisease()
+    {
+        return disease;
+    }
+
+    /**
+     * @return The constants overridden for this simulation.
+     */
+    public Parameters getParameters()
+    {
+        return parameters;
+    }
+
+    /**
+     * @return The current step of the simulation.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * Move the clock on to the next step.
+     * @return The new step.
+     */
+    public int nextStep()
+    {
+        return ++step;
+    }
+
+    /**
+     * Set the clock back to step zero and forget the deaths scheduled and
+     * the animals.
+     */
+    public void resetStep()
+    {
+        step = 0;
+        growth = 0;
+        deaths.clear();
+        witherings.clear();
+        animals.clear();
+    }
+
+    /**
+     * @return The age, food level and flags of the animals.
+     */
+    public AnimalTable getAnimals()
+    {
+        return animals;
+    }
+
+    /**
+     * @return The growth of the plants since step zero.
+     */
+    public long getGrowth()
+    {
+        return growth;
+    }
+
+    /**
+     * Let the plants grow for the current step.
+     * @param amount The growth of the step.
+     */
+    public void grow(int amount)
+    {
+        growth += amount;
+    }
+
+    /**
+     * @return The animals, by the step at which they die of old age or of
+     * the disease.
+     */
+    public TimerWheel<Entity> getDeaths()
+    {
+        return deaths;
+    }
+
+    /**
+     * @return The plants, by the growth at which they wither.
+     */
+    public TimerWheel<Entity> getWitherings()
+    {
+        return witherings;
+    }
+}
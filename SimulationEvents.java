@@ -0,0 +1,230 @@
+import java.util.concurrent.ThreadLocalRandom;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The Java Flight Recorder events of the simulation. A Step event is
+ * emitted for every step. Births, kills, disease deaths and starvation
+ * happen thousands of times per step, so only about one in SAMPLE_PERIOD
+ * of them is recorded; each event holds the number of occurrences it
+ * stands for.
+ *
+ * The events are recorded along with the usual JFR events, e.g. with
+ * java -XX:StartFlightRecording=filename=savanna.jfr HeadlessSimulator,
+ * and appear under "Savanna" in JDK Mission Control.
+ *
+ * @author Aymen Berbache and Aleks
+ * @version 2022.02
+ */
+public class SimulationEvents
+{
+    // The average number of occurrences of a sampled event per event recorded.
+    public static final int SAMPLE_PERIOD = 64;
+
+    /**
+     * This class only holds the events.
+     */
+    private SimulationEvents()
+    {
+    }
+
+    /**
+     * Decide whether to record an occurrence of a sampled event. The draw
+     * does not use the random generator of the simulation, so recording
+     * does not change its results.
+     * @return true about once every SAMPLE_PERIOD calls.
+     */
+    public static boolean sample()
+    {
+        return ThreadLocalRandom.current().nextInt(SAMPLE_PERIOD) == 0;
+    }
+
+    /**
+     * Record a birth, if sampled.
+     * @param species The species code of the parent.
+     * @param offspring The number of entities born.
+     */
+    public static void birth(int species, int offspring)
+    {
+        Birth event = new Birth();
+        if(event.isEnabled() && sample()) {
+            event.species = Species.getName(species);
+            event.offspring = offspring;
+            event.commit();
+        }
+    }
+
+    /**
+     * Record a kill, if sampled.
+     * @param hunter The species code of the animal eating.
+     * @param prey The species code of the entity eaten.
+     * @param foodGained The food gained by the animal.
+     */
+    public static void kill(int hunter, int prey, int foodGained)
+    {
+        Kill event = new Kill();
+        if(event.isEnabled() && sample()) {
+            event.hunter = Species.getName(hunter);
+            event.prey = Species.getName(prey);
+            event.foodGained = foodGained;
+            event.commit();
+        }
+    }
+
+    /**
+     * Record an animal catching the disease, if sampled.
+     * @param species The species code of the animal.
+     * @param age The age of the animal when it caught the disease.
+     * @param immediate Whether it died at once.
+     */
+    public static void diseaseDeath(int species, int age, boolean immediate)
+    {
+        DiseaseDeath event = new DiseaseDeath();
+        if(event.isEnabled() && sample()) {
+            event.species = Species.getName(species);
+            event.age = age;
+            event.immediate = immediate;
+            event.commit();
+        }
+    }
+
+    /**
+     * Record an animal dying of hunger, if sampled.
+     * @param species The species code of the animal.
+     * @param age The age of the animal.
+     */
+    public static void starvation(int species, int age)
+    {
+        Starvation event = new Starvation();
+        if(event.isEnabled() && sample()) {
+            event.species = Species.getName(species);
+            event.age = age;
+            event.commit();
+        }
+    }
+
+    /**
+     * One step of a simulation.
+     */
+    @Name("savanna.Step")
+    @Label("Simulation Step")
+    @Category("Savanna")
+    @StackTrace(false)
+    public static class Step extends Event
+    {
+        @Label("Step")
+        public int step;
+
+        @Label("Entities")
+        @Description("The number of entities at the end of the step.")
+        public int entities;
+
+        @Label("Births")
+        @Description("The number of entities born during the step.")
+        public int births;
+
+        @Label("Deaths")
+        @Description("The number of entities that died during the step.")
+        public int deaths;
+
+        @Label("Act Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        public long actDuration;
+
+        @Label("Remove Dead Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        public long removeDeadDuration;
+
+        @Label("Newborns Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        public long newbornsDuration;
+    }
+
+    /**
+     * A litter of animals or the spreading of a plant, sampled.
+     */
+    @Name("savanna.Birth")
+    @Label("Birth")
+    @Category("Savanna")
+    @StackTrace(false)
+    public static class Birth extends Event
+    {
+        @Label("Species")
+        public String species;
+
+        @Label("Offspring")
+        public int offspring;
+
+        @Label("Sample Period")
+        public int samplePeriod = SAMPLE_PERIOD;
+    }
+
+    /**
+     * An entity eaten by an animal, sampled.
+     */
+    @Name("savanna.Kill")
+    @Label("Kill")
+    @Category("Savanna")
+    @StackTrace(false)
+    public static class Kill extends Event
+    {
+        @Label("Hunter")
+        public String hunter;
+
+        @Label("Prey")
+        public String prey;
+
+        @Label("Food Gained")
+        public int foodGained;
+
+        @Label("Sample Period")
+        public int samplePeriod = SAMPLE_PERIOD;
+    }
+
+    /**
+     * An animal catching the disease from another, sampled.
+     */
+    @Name("savanna.DiseaseDeath")
+    @Label("Disease Death")
+    @Category("Savanna")
+    @StackTrace(false)
+    public static class DiseaseDeath extends Event
+    {
+        @Label("Species")
+        public String species;
+
+        @Label("Age")
+        public int age;
+
+        @Label("Died Immediately")
+        @Description("Whether the animal was too old to survive the disease for a few steps.")
+        public boolean immediate;
+
+        @Label("Sample Period")
+        public int samplePeriod = SAMPLE_PERIOD;
+    }
+
+    /**
+     * An animal dying of hunger, sampled.
+     */
+    @Name("savanna.Starvation")
+    @Label("Starvation")
+    @Category("Savanna")
+    @StackTrace(false)
+    public static class Starvation extends Event
+    {
+        @Label("Species")
+        public String species;
+
+        @Label("Age")
+        public int age;
+
+        @Label("Sample Period")
+        public int samplePeriod = SAMPLE_PERIOD;
+    }
+}
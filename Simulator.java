@@ -1,9 +1,11 @@
-import java.util.Random;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.awt.Color;
-import java.util.concurrent.ThreadLocalRandom;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.random.RandomGenerator;
+import javax.management.JMException;
 
 /**
  * Simulation of a savanna environment
@@ -31,22 +33,26 @@ public class Simulator
     // The probability that grass will be created in any given grid position.
     private static final double GRASS_CREATION_PROBABILITY = 0.10;
 
-    // List of animals in the field.
-    private final List<Entity> entities;
+    // The entities in the field.
+    private final EntityStore entities;
     // The current state of the field.
     private final Field field;
-    // The current step of the simulation.
-    private static int step;
-    // A graphical view of the simulation.
-    private final SimulatorView view;
-    // Boolean to control the running state.
-    public boolean isRunning = true;
-    // An object that tracks day/night cycles.
-    public static Time time = new Time();
-    // An object that tracks the weather.
-    public static Weather weather = new Weather();
-    // Add disease to simulation
-    public static Disease disease = new Disease(0.05, 10);
+    // The clock, weather, disease and random generator of this simulation.
+    private final SimulationContext context;
+    // Observers notified of the simulation status, e.g. the graphical view.
+    private final List<SimulatorObserver> observers;
+    // Statistics used to decide whether the simulation is still viable.
+    private final FieldStats stats;
+    // The pause between two steps, in milliseconds.
+    private int stepDelay = 10;
+    // Updates the entities on several threads, null to update them on this one.
+    private TiledStepper stepper;
+    // Measures the time spent in each phase of a step.
+    private final StepProfiler profiler;
+    // Keeps the grass without Grass objects, null if grass is made of objects.
+    private final GrassLayer grassLayer;
+    // The field mapped from a world file, null if the field is on the heap.
+    private final MappedField world;
 
 
     /**
@@ -63,6 +69,128 @@ public class Simulator
      * @param width Width of the field. Must be greater than zero.
      */
     public Simulator(int depth, int width)
+    {
+        this(depth, width, true);
+    }
+
+    /**
+     * Create a simulation field with the given size.
+     * A headless simulation has no graphical view and does not pause
+     * between steps; observers can be added to follow its progress.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param showView Whether to display the simulation in a window.
+     */
+    public Simulator(int depth, int width, boolean showView)
+    {
+        this(depth, width, showView, new SimulationContext());
+    }
+
+    /**
+     * Create a simulation field with the given size and seed. Simulations
+     * with the same seed and size run the same way, and any number of
+     * simulations can run at the same time.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param showView Whether to display the simulation in a window.
+     * @param seed The seed of the random generator of the simulation.
+     */
+    public Simulator(int depth, int width, boolean showView, long seed)
+    {
+        this(depth, width, showView, new SimulationContext(seed));
+    }
+
+    /**
+     * Create a headless simulation with the given size, seed and parameters.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param seed The seed of the random generator of the simulation.
+     * @param parameters The constants overridden for this simulation.
+     */
+    public Simulator(int depth, int width, long seed, Parameters parameters)
+    {
+        this(depth, width, false, new SimulationContext(seed, parameters));
+    }
+
+    /**
+     * Create a simulation field with the given size and context.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param showView Whether to display the simulation in a window.
+     * @param context The clock, weather, disease and random generator.
+     */
+    private Simulator(int depth, int width, boolean showView, SimulationContext context)
+    {
+        this(createField(depth, width, context), showView);
+    }
+
+    /**
+     * Create a headless simulation of the world kept in the given file,
+     * which is mapped into memory rather than read. If the file exists,
+     * its cells are taken as they are and only its animals are created;
+     * otherwise a world of the given size is created in it and populated.
+     * A mapped world always keeps its grass in a grass layer. Call
+     * saveWorld to write the world back to the file.
+     * @param file The world file.
+     * @param depth Depth of a new world. Must be greater than zero.
+     * @param width Width of a new world. Must be greater than zero.
+     * @param seed The seed of the random generator of the simulation.
+     * @param parameters The constants overridden for this simulation.
+     * @throws IOException If the file cannot be created or mapped.
+     */
+    public Simulator(Path file, int depth, int width, long seed, Parameters parameters)
+            throws IOException
+    {
+        this(mapWorld(file, depth, width, new SimulationContext(seed, parameters)), false);
+    }
+
+    /**
+     * Create a simulation of the given field.
+     * @param field The empty field, or a mapped world.
+     * @param showView Whether to display the simulation in a window.
+     */
+    private Simulator(Field field, boolean showView)
+    {
+        this.field = field;
+        context = field.getContext();
+        world = field instanceof MappedField ? (MappedField) field : null;
+        entities = new EntityStore();
+        observers = new ArrayList<>();
+        stats = new FieldStats();
+        profiler = new StepProfiler();
+        if(world != null || context.getParameters().get(Parameters.GRASS_LAYER, 0) != 0) {
+            grassLayer = new GrassLayer(field);
+        }
+        else {
+            grassLayer = null;
+        }
+        int depth = field.getDepth();
+        int width = field.getWidth();
+
+        if(showView) {
+            createView(depth, width);
+        }
+        else {
+            stepDelay = 0;
+        }
+
+        // Setup a valid starting point.
+        if(world != null && !world.isNew()) {
+            adoptWorld();
+        }
+        else {
+            reset();
+        }
+    }
+
+    /**
+     * Create an empty field on the heap.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param context The clock, weather, disease and random generator.
+     * @return The field, of the default size if the given one is not valid.
+     */
+    private static Field createField(int depth, int width, SimulationContext context)
     {
         if(width <= 0 || depth <= 0) {
             System.out.println("The dimensions must be greater than zero.");
@@ -70,21 +198,96 @@ public class Simulator
             depth = DEFAULT_DEPTH;
             width = DEFAULT_WIDTH;
         }
+        return new Field(depth, width, context,
+                context.getParameters().get(Parameters.COMPACT_FIELD, 0) != 0);
+    }
 
-        entities = new ArrayList<>();
-        field = new Field(depth, width);
+    /**
+     * Map a world file, creating it if it does not exist.
+     * @param file The world file.
+     * @param depth Depth of a new world.
+     * @param width Width of a new world.
+     * @param context The clock, weather, disease and random generator.
+     * @return The field mapped from the file.
+     * @throws IOException If the file cannot be created or mapped.
+     */
+    private static MappedField mapWorld(Path file, int depth, int width, SimulationContext context)
+            throws IOException
+    {
+        if(Files.exists(file)) {
+            return MappedField.open(file, context);
+        }
+        return MappedField.create(file, depth, width, context);
+    }
 
-        // Create a view of the state of each location in the field.
-        view = new SimulatorView(this, depth, width);
+    /**
+     * Create a view of the state of each location in the field.
+     * @param depth Depth of the field.
+     * @param width Width of the field.
+     */
+    private void createView(int depth, int width)
+    {
+        SimulatorView view = new SimulatorView(this, depth, width);
         view.setColor(Lion.class, Color.ORANGE);
         view.setColor(Human.class, Color.RED);
         view.setColor(Elephant.class, Color.LIGHT_GRAY);
         view.setColor(Zebra.class, Color.MAGENTA);
         view.setColor(Buffalo.class, Color.DARK_GRAY);
         view.setColor(Grass.class, Color.GREEN);
+        addObserver(view);
+        try {
+            profiler.register("view");
+        }
+        catch(JMException e) {
+            System.out.println("The profiler could not be registered: " + e.getMessage());
+        }
+    }
 
-        // Setup a valid starting point.
-        reset();
+    /**
+     * Register an observer to be notified after each step.
+     * @param observer The observer to add.
+     */
+    public void addObserver(SimulatorObserver observer)
+    {
+        observers.add(observer);
+    }
+
+    /**
+     * Remove a previously registered observer.
+     * @param observer The observer to remove.
+     */
+    public void removeObserver(SimulatorObserver observer)
+    {
+        observers.remove(observer);
+    }
+
+    /**
+     * Set the pause between two steps of a run.
+     * @param millisec The pause in milliseconds, zero for none.
+     */
+    public void setStepDelay(int millisec)
+    {
+        stepDelay = Math.max(0, millisec);
+    }
+
+    /**
+     * Set the number of threads updating the entities. With one thread or
+     * more, the field is updated tile by tile and a given seed gives the
+     * same results whatever the number of threads. With zero, entities
+     * act one after the other on the calling thread.
+     * @param threads The number of threads, or zero.
+     */
+    public void setParallelism(int threads)
+    {
+        if(stepper != null) {
+            stepper.shutdown();
+            stepper = null;
+        }
+        if(threads > 0) {
+            // The tiles let every entity act, asleep or not.
+            entities.wakeAll();
+            stepper = new TiledStepper(field, threads, context.getRandom().nextLong());
+        }
     }
 
     /**
@@ -103,9 +306,35 @@ public class Simulator
      */
     public void simulate(int numSteps)
     {
-        for(int step = 1; step <= numSteps && view.isViable(field) && isRunning; step++) {
+        for(int step = 1; step <= numSteps && isViable(); step++) {
             simulateOneStep();
-            delay(10);
+            if(stepDelay > 0) {
+                delay(stepDelay);
+            }
+        }
+    }
+
+    /**
+     * Determine whether the simulation should continue to run.
+     * @return true If there is more than one species alive.
+     */
+    public boolean isViable()
+    {
+        long time = System.nanoTime();
+        boolean viable = stats.isViable(field);
+        profiler.record(StepProfiler.Phase.STATS, time);
+        return viable;
+    }
+
+    /**
+     * Notify every observer of the current state of the simulation.
+     * Nothing is computed when no observer is registered.
+     */
+    public void notifyObservers()
+    {
+        for(SimulatorObserver observer : observers) {
+            observer.showStatus(context.getStep(), field, context.getTime().getIsDay(),
+                                context.getWeather(), context.getDisease());
         }
     }
 
@@ -115,38 +344,104 @@ public class Simulator
      */
     public void simulateOneStep()
     {
-        step++;
+        simulateOneStep(true);
+    }
+
+    /**
+     * Run the simulation from its current state for a single step.
+     * @param notify Whether to notify the observers of the new state.
+     */
+    public void simulateOneStep(boolean notify)
+    {
+        SimulationEvents.Step event = new SimulationEvents.Step();
+        event.begin();
+        long start = System.nanoTime();
+        int step = context.nextStep();
+        int entitiesBefore = getEntityCount();
+        int births;
+        profiler.beginStep(step);
 
         // Alternate time each 10 steps.
         alternateTime();
         // Change weather state randomly.
         changeWeather();
+        long time = profiler.record(StepProfiler.Phase.CLOCK, start);
+        // Let the entities whose time has come die, all at once.
+        expireEntities(step);
+        time = profiler.record(StepProfiler.Phase.EXPIRE, time);
 
-        // Provide space for newborn entities.
-        List<Entity> newEntities = new ArrayList<>();
-
-        // Let all entities act.
-        for(Iterator<Entity> it = entities.iterator(); it.hasNext(); ) {
-            Entity entity = it.next();
-            if(!entity.isAlive()) {
-                it.remove();
-            }else {
-                entity.act(newEntities);
+        births = 0;
+        if(grassLayer != null) {
+            // Let the grass spread before the entities act.
+            births = grassLayer.spread();
+        }
+        if(stepper != null) {
+            // Let the entities of each tile act, possibly concurrently.
+            births += stepper.step(entities, step, profiler);
+        }
+        else {
+            // Wake up the sleepers whose time has come.
+            entities.wakeSleepers();
+            if(world != null) {
+                // Let the entities act page by page, to keep few pages in use.
+                entities.sortByPage(world.getPageCount(), MappedField.PAGE_BITS);
             }
+            // Let all entities act.
+            entities.actAll(profiler);
+            time = profiler.record(StepProfiler.Phase.ACT, time);
+            // Remove the entities that died, and set the sleepers aside.
+            entities.removeDeadAndSleeping();
+            time = profiler.record(StepProfiler.Phase.REMOVE_DEAD, time);
+            // Add the newly born entities to the store.
+            births += entities.addNewborns();
+            profiler.record(StepProfiler.Phase.NEWBORNS, time);
         }
+        event.end();
 
-        // Add the newly born entities to the main lists.
-        entities.addAll(newEntities);
+        if(notify) {
+            time = System.nanoTime();
+            notifyObservers();
+            profiler.record(StepProfiler.Phase.RENDER, time);
+        }
+        profiler.record(StepProfiler.Phase.STEP, start);
 
-        view.showStatus(step, field, time.getIsDay(), weather,disease);
+        if(event.shouldCommit()) {
+            event.step = step;
+            event.entities = getEntityCount();
+            event.births = births;
+            event.deaths = entitiesBefore + births - getEntityCount();
+            event.actDuration = profiler.getLastNanos(StepProfiler.Phase.ACT);
+            event.removeDeadDuration = profiler.getLastNanos(StepProfiler.Phase.REMOVE_DEAD);
+            event.newbornsDuration = profiler.getLastNanos(StepProfiler.Phase.NEWBORNS);
+            event.commit();
+        }
+    }
+
+    /**
+     * Let the animals that reach their maximum age or succumb to the
+     * disease at this step die, and the plants that grew old wither,
+     * before any entity acts. Only the entities dying are visited. Then
+     * let the animals age and get hungry, in one pass over their table.
+     * @param step The current step.
+     */
+    private void expireEntities(int step)
+    {
+        context.getDeaths().advanceTo(step, Entity::expire);
+        context.getAnimals().ageAll();
+        // Plants grow two times more when it's rainy.
+        context.grow(context.getWeather().isRainy() ? 2 : 1);
+        context.getWitherings().advanceTo(context.getGrowth(), Entity::expire);
+        if(grassLayer != null) {
+            grassLayer.wither();
+        }
     }
 
     /**
      * Change the state of the time each 5 steps.
      */
     public void alternateTime(){
-        if(step % 10 == 0){
-            time.switchTime();
+        if(context.getStep() % 10 == 0){
+            context.getTime().switchTime();
         }
     }
 
@@ -156,10 +451,10 @@ public class Simulator
      */
     public void changeWeather(){
         //Get a random number between 10 and 20 exclusive.
-        int randomNum = ThreadLocalRandom.current().nextInt(5,10);
+        int randomNum = context.getRandom().nextInt(5,10);
         // Change weather state if condition met.
-        if(step % randomNum == 0){
-            weather.weatherUpdate();
+        if(context.getStep() % randomNum == 0){
+            context.getWeather().weatherUpdate();
         }
     }
 
@@ -168,12 +463,87 @@ public class Simulator
      */
     public void reset()
     {
-        step = 0;
+        context.resetStep();
         entities.clear();
+        if(grassLayer != null) {
+            grassLayer.clear();
+        }
         populate();
 
-        // Show the starting state in the view.
-        view.showStatus(step, field, time.getIsDay(), weather,disease);
+        // Show the starting state to the observers.
+        notifyObservers();
+    }
+
+    /**
+     * Start the simulation of a mapped world from the cells of its file.
+     * The grass of the file is kept as it is, with its age; an animal of
+     * a random age is created in every cell holding one, page by page.
+     */
+    private void adoptWorld()
+    {
+        context.resetStep();
+        entities.clear();
+        grassLayer.clear();
+        // Restart the growth where the grass was tagged, so that it keeps its age.
+        context.grow((int) (world.getSavedGrowth() & Field.MAX_TAG));
+        int cells = field.getDepth() * field.getWidth();
+        for(int cell = 0; cell < cells; cell++) {
+            int code = field.getSpeciesAt(cell);
+            if(code != Species.NONE) {
+                if(field.getTag(cell) >= 0) {
+                    // Grass of the layer, saved with its age.
+                    grassLayer.adopt(cell);
+                }
+                else if(code == Grass.SPECIES) {
+                    grassLayer.plant(cell);
+                }
+                else {
+                    entities.introduce(createAnimal(code, field.getLocation(cell)));
+                }
+            }
+        }
+        field.recount();
+
+        // Show the starting state to the observers.
+        notifyObservers();
+    }
+
+    /**
+     * Create an animal of a random age.
+     * @param code The species code of the animal.
+     * @param location The location of the animal.
+     * @return The new animal.
+     */
+    private Animal createAnimal(int code, Location location)
+    {
+        Class<?> type = Species.getType(code);
+        if(type == Elephant.class) {
+            return new Elephant(true, field, location);
+        }
+        else if(type == Zebra.class) {
+            return new Zebra(true, field, location);
+        }
+        else if(type == Buffalo.class) {
+            return new Buffalo(true, field, location);
+        }
+        else if(type == Lion.class) {
+            return new Lion(true, field, location);
+        }
+        else if(type == Human.class) {
+            return new Human(true, field, location);
+        }
+        throw new IllegalStateException("Cannot create an animal of species " + Species.getName(code));
+    }
+
+    /**
+     * Write a mapped world back to its file, so that a later simulation
+     * can start from it. Nothing is done if the field is on the heap.
+     */
+    public void saveWorld()
+    {
+        if(world != null) {
+            world.flush();
+        }
     }
 
     /**
@@ -181,39 +551,52 @@ public class Simulator
      */
     private void populate()
     {
-        Random rand = Randomizer.getRandom();
+        RandomGenerator rand = context.getRandom();
+        Parameters parameters = context.getParameters();
+        double density = parameters.get(Parameters.CREATION_DENSITY, 1.0);
+        double elephantProbability = density * parameters.get("ELEPHANT_CREATION_PROBABILITY", ELEPHANT_CREATION_PROBABILITY);
+        double zebraProbability = density * parameters.get("ZEBRA_CREATION_PROBABILITY", ZEBRA_CREATION_PROBABILITY);
+        double buffaloProbability = density * parameters.get("BUFFALO_CREATION_PROBABILITY", BUFFALO_CREATION_PROBABILITY);
+        double grassProbability = density * parameters.get("GRASS_CREATION_PROBABILITY", GRASS_CREATION_PROBABILITY);
+        double lionProbability = density * parameters.get("LION_CREATION_PROBABILITY", LION_CREATION_PROBABILITY);
+        double humanProbability = density * parameters.get("HUMAN_CREATION_PROBABILITY", HUMAN_CREATION_PROBABILITY);
         field.clear();
         for(int row = 0; row < field.getDepth(); row++) {
             for(int col = 0; col < field.getWidth(); col++) {
-                if(rand.nextDouble() <= ELEPHANT_CREATION_PROBABILITY) {
+                if(rand.nextDouble() <= elephantProbability) {
                     Location location = new Location(row, col);
                     Elephant elephant = new Elephant(true, field, location);
-                    entities.add(elephant);
+                    entities.introduce(elephant);
                 }
-                else if(rand.nextDouble() <= ZEBRA_CREATION_PROBABILITY) {
+                else if(rand.nextDouble() <= zebraProbability) {
                     Location location = new Location(row, col);
                     Zebra zebra = new Zebra(true, field, location);
-                    entities.add(zebra);
+                    entities.introduce(zebra);
                 }
-                else if(rand.nextDouble() <= BUFFALO_CREATION_PROBABILITY) {
+                else if(rand.nextDouble() <= buffaloProbability) {
                     Location location = new Location(row, col);
                     Buffalo buffalo = new Buffalo(true, field, location);
-                    entities.add(buffalo);
+                    entities.introduce(buffalo);
                 }
-                else if(rand.nextDouble() <= GRASS_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Grass grass = new Grass(field, location);
-                    entities.add(grass);
+                else if(rand.nextDouble() <= grassProbability) {
+                    if(grassLayer != null) {
+                        grassLayer.plant(field.getCell(row, col));
+                    }
+                    else {
+                        Location location = new Location(row, col);
+                        Grass grass = new Grass(field, location);
+                        entities.introduce(grass);
+                    }
                 }
-                else if(rand.nextDouble() <= LION_CREATION_PROBABILITY) {
+                else if(rand.nextDouble() <= lionProbability) {
                     Location location = new Location(row, col);
                     Lion lion = new Lion(true, field, location);
-                    entities.add(lion);
+                    entities.introduce(lion);
                 }
-                else if(rand.nextDouble() <= HUMAN_CREATION_PROBABILITY) {
+                else if(rand.nextDouble() <= humanProbability) {
                     Location location = new Location(row, col);
                     Human human = new Human(true, field, location);
-                    entities.add(human);
+                    entities.introduce(human);
                 }
 
                 // else leave the location empty.
@@ -235,6 +618,59 @@ public class Simulator
         }
     }
 
+    /**
+     * @return The current step of the simulation.
+     */
+    public int getStep()
+    {
+        return context.getStep();
+    }
+
+    /**
+     * @return The profiler measuring the phases of each step.
+     */
+    public StepProfiler getProfiler()
+    {
+        return profiler;
+    }
+
+    /**
+     * @return The clock, weather, disease and random generator of the simulation.
+     */
+    public SimulationContext getContext()
+    {
+        return context;
+    }
+
+    /**
+     * @return The field of the simulation.
+     */
+    public Field getField()
+    {
+        return field;
+    }
+
+    /**
+     * @return The number of living entities in the simulation, patches
+     * of grass of the grass layer included.
+     */
+    public int getEntityCount()
+    {
+        int count = entities.size() + entities.getSleeping();
+        if(grassLayer != null) {
+            count += grassLayer.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return The grass layer, or null if grass is made of Grass objects.
+     */
+    public GrassLayer getGrassLayer()
+    {
+        return grassLayer;
+    }
+
     public static void main(String[] args) {
         Simulator simulator =  new Simulator();
     }
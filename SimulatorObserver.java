@@ -0,0 +1,20 @@
+/**
+ * An observer that is notified of the state of the simulation
+ * after each step. The graphical view is one such observer; headless
+ * runs may register their own, or none at all.
+ *
+ * @author Aymen Berbache and Aleks
+ * @version 2022.02
+ */
+public interface SimulatorObserver
+{
+    /**
+     * Show the current status of the field.
+     * @param step Which iteration step it is.
+     * @param field The field whose status is to be displayed.
+     * @param time The current time of day.
+     * @param weather The current weather.
+     * @param disease The disease spreading in the simulation.
+     */
+    void showStatus(int step, Field field, String time, Weather weather, Disease disease);
+}
@@ -1,7 +1,10 @@
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import javax.swing.*;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A graphical view of the simulation grid.
@@ -10,10 +13,16 @@ import java.util.Map;
  * Colors for each type of species can be defined using the
  * setColor method.
  *
+ * The simulation thread does not touch the Swing components: after each
+ * step it publishes a snapshot of the field into a bounded buffer, and
+ * the snapshots are drawn on the event dispatch thread. While a frame is
+ * drawn the next step is computed, and when the view falls behind the
+ * pending frames are dropped rather than slowing the simulation down.
+ *
  * @author Aymen Berbache and Aleks
  * @version 2022.02
  */
-public class SimulatorView extends JFrame
+public class SimulatorView extends JFrame implements SimulatorObserver
 {
     // A variable that holds reference to the simulator.
     private final Simulator simulator;
@@ -22,6 +31,9 @@ public class SimulatorView extends JFrame
     // Color used for objects that have no defined color.
     private static final Color UNKNOWN_COLOR = Color.BLUE;
 
+    // The maximum number of frames waiting to be drawn.
+    private static final int FRAME_CAPACITY = 8;
+
     private final String STEP_PREFIX = "Step: ";
     private final String POPULATION_PREFIX = "Population: ";
     private final String TIME_PREFIX = "Time: ";
@@ -34,8 +46,18 @@ public class SimulatorView extends JFrame
 
     // A map for storing colors for participants in the simulation
     private final Map<Class, Color> colors;
+    // The RGB values of the colors of the participants, indexed by species code
+    private int[] speciesColors;
     // A statistics object computing and storing simulation information
     private final FieldStats stats;
+    // The frames published by the simulation thread and not drawn yet.
+    private final FrameBuffer frames;
+    // Whether the frames will be drawn by a task already queued on the event dispatch thread.
+    private final AtomicBoolean drawQueued;
+    // The field of the last frame published, to find out when a key frame is needed.
+    private Field publishedField;
+    // Runs the simulation on its own thread.
+    private final RunController controller;
 
     /**
      * Create a view of the given width and height.
@@ -46,9 +68,13 @@ public class SimulatorView extends JFrame
     {
         // Reference to simulator is being stored so that it can be accessed later on.
         this.simulator  = simulator;
+        controller = new RunController(simulator);
 
         stats = new FieldStats();
         colors = new LinkedHashMap<>();
+        speciesColors = new int[0];
+        frames = new FrameBuffer(FRAME_CAPACITY);
+        drawQueued = new AtomicBoolean();
 
         setTitle("Savanna Simulation");
 
@@ -71,6 +97,8 @@ public class SimulatorView extends JFrame
         oneStepButton.addActionListener(e -> oneStepEvent());
         JButton resetButton = new JButton("Reset");
         resetButton.addActionListener(e -> resetEvent());
+        JComboBox<RunController.Mode> modeBox = new JComboBox<>(RunController.Mode.values());
+        modeBox.addActionListener(e -> modeEvent((RunController.Mode) modeBox.getSelectedItem()));
 
         setLocation(100, 50);
 
@@ -99,11 +127,12 @@ public class SimulatorView extends JFrame
         // Buttons panel at the right of the stage
         JPanel buttonsPanel = new JPanel();
         buttonsPanel.setBackground(Color.LIGHT_GRAY);
-        buttonsPanel.setLayout(new GridLayout(3,1));
+        buttonsPanel.setLayout(new GridLayout(4,1));
         buttonsPanel.setBorder(BorderFactory.createTitledBorder("CONTROLS"));
         buttonsPanel.add(runLongButton);
         buttonsPanel.add(oneStepButton);
         buttonsPanel.add(resetButton);
+        buttonsPanel.add(modeBox);
 
 
         // Manage the layout of the stage
@@ -122,36 +151,39 @@ public class SimulatorView extends JFrame
      * Implements the event that occurs when button "Run/Stop" is clicked.
      */
     private void runStopEvent(){
-        if(java.lang.Thread.activeCount() == 3){
-            // If the simulation isn't running, make it start running in a new Thread.
-            simulator.isRunning = true;
-            // Start new Thread
-            new Thread(simulator::runLongSimulation).start();
+        if(controller.isRunning()){
+            controller.pause();
         } else{
-            // Terminate thread.
-            simulator.isRunning = false;
+            controller.resume();
         }
     }
 
     /**
      * Implements the event that occurs when button "One Step" is clicked.
+     * Pauses the simulation if it is running.
      */
     private void oneStepEvent(){
-        // Terminate Thread if simulation is currently running
-        if(java.lang.Thread.activeCount() == 4){
-            simulator.isRunning = false;
-        }else{
-            // Method call from simulator class via simulator instance.
-            simulator.simulateOneStep();
-        }
+        controller.step();
     }
 
     /**
      * Implements the event that occurs when button "Reset" is clicked.
      */
     private void resetEvent(){
-        simulator.isRunning  =  false;
-        simulator.reset();
+        controller.reset();
+    }
+
+    /**
+     * Implements the event that occurs when a run mode is selected.
+     * A running simulation is restarted in the new mode.
+     */
+    private void modeEvent(RunController.Mode mode){
+        boolean running = controller.isRunning();
+        controller.pause();
+        controller.setMode(mode);
+        if(running){
+            controller.resume();
+        }
     }
 
     /**
@@ -162,6 +194,8 @@ public class SimulatorView extends JFrame
     public void setColor(Class animalClass, Color color)
     {
         colors.put(animalClass, color);
+        // Rebuild the colors by species code on the next update.
+        speciesColors = new int[0];
     }
 
 
@@ -181,39 +215,73 @@ public class SimulatorView extends JFrame
     }
 
     /**
-     * Show the current status of the field.
+     * Make sure there is a color for every species code in use.
+     */
+    private void updateSpeciesColors()
+    {
+        int count = Species.count();
+        if(speciesColors.length != count) {
+            speciesColors = new int[count];
+            speciesColors[Species.NONE] = EMPTY_COLOR.getRGB();
+            for(int code = 1; code < count; code++) {
+                speciesColors[code] = getColor(Species.getType(code)).getRGB();
+            }
+        }
+    }
+
+    /**
+     * Publish the current status of the field, to be drawn on the event
+     * dispatch thread. Called on the thread running the simulation.
      * @param step Which iteration step it is.
      * @param field The field whose status is to be displayed.
      */
     public void showStatus(int step, Field field, String time, Weather weather, Disease disease)
     {
+        String populationDetails = stats.getPopulationDetails(field).toString();
+        if(field != publishedField) {
+            // Ask the field for the cells changed between two frames.
+            field.setTrackingChanges(true);
+        }
+        boolean keyFrame = field != publishedField || field.isAllChanged();
+        Frame frame = new Frame(step, field, time, weather, disease, populationDetails, keyFrame);
+        field.clearChanges();
+        publishedField = field;
+        if(!frames.offer(frame)) {
+            // The view is behind: drop the pending frames and start again from a key frame.
+            frames.clear();
+            frames.offer(new Frame(step, field, time, weather, disease, populationDetails, true));
+        }
+        if(!drawQueued.getAndSet(true)) {
+            SwingUtilities.invokeLater(this::drawFrames);
+        }
+    }
+
+    /**
+     * Draw the frames published since the last call, and show the
+     * status of the most recent one. Called on the event dispatch thread.
+     */
+    private void drawFrames()
+    {
+        drawQueued.set(false);
+        updateSpeciesColors();
+        Frame latest = null;
+        Frame frame;
+        while((frame = frames.poll()) != null) {
+            fieldView.drawFrame(frame, speciesColors);
+            latest = frame;
+        }
+        if(latest == null) {
+            return;
+        }
         if(!isVisible()) {
             setVisible(true);
         }
 
-        stepLabel.setText(STEP_PREFIX + step);
-        timeLabel.setText(TIME_PREFIX + time);
-        weatherLabel.setText(WEATHER_PREFIX + weather.getWeatherStatus());
-        diseaseLabel.setText(DISEASE_PREFIX + disease.getDeaths());
-        stats.reset();
-
-
-        fieldView.preparePaint();
-
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                Object animal = field.getObjectAt(row, col);
-                if(animal != null) {
-                    stats.incrementCount(animal.getClass());
-                    fieldView.drawMark(col, row, getColor(animal.getClass()));
-                }
-                else {
-                    fieldView.drawMark(col, row, EMPTY_COLOR);
-                }
-            }
-        }
-        stats.countFinished();
-        population.setText(POPULATION_PREFIX + stats.getPopulationDetails(field).toString());
+        stepLabel.setText(STEP_PREFIX + latest.getStep());
+        timeLabel.setText(TIME_PREFIX + latest.getTime());
+        weatherLabel.setText(WEATHER_PREFIX + latest.getWeather());
+        diseaseLabel.setText(DISEASE_PREFIX + latest.getDiseaseDeaths());
+        population.setText(POPULATION_PREFIX + latest.getPopulationDetails());
         fieldView.repaint();
     }
 
@@ -231,8 +299,9 @@ public class SimulatorView extends JFrame
      * a nested class (a class defined inside a class) which
      * defines a custom component for the user interface. This
      * component displays the field.
-     * This is rather advanced GUI stuff - you can ignore this
-     * for your project if you like.
+     * The field is drawn into an image with one pixel per cell, whose
+     * pixels are written directly, and the image is scaled up to the
+     * size of the component when it is copied to the screen.
      */
     private class FieldView extends JPanel
     {
@@ -240,10 +309,14 @@ public class SimulatorView extends JFrame
 
         private final int gridWidth;
         private final int gridHeight;
-        private int xScale, yScale;
-        Dimension size;
-        private Graphics g;
-        private Image fieldImage;
+        // The image of the field, one pixel per cell.
+        private final BufferedImage fieldImage;
+        // The pixels of the image, one RGB value per cell in cell order.
+        private final int[] pixels;
+        // The species code of every cell, as of the last frame drawn.
+        private final byte[] cells;
+        // The colors last drawn, to find out when every cell must be painted again.
+        private int[] drawnColors;
 
         /**
          * Create a new FieldView component.
@@ -252,7 +325,9 @@ public class SimulatorView extends JFrame
         {
             gridHeight = height;
             gridWidth = width;
-            size = new Dimension(0, 0);
+            fieldImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) fieldImage.getRaster().getDataBuffer()).getData();
+            cells = new byte[height * width];
         }
 
         /**
@@ -265,52 +340,40 @@ public class SimulatorView extends JFrame
         }
 
         /**
-         * Prepare for a new round of painting. Since the component
-         * may be resized, compute the scaling factor again.
+         * Apply a frame and paint the cells it changed in the color of
+         * their species. Every cell is painted for a key frame, or when
+         * the colors changed.
+         * @param frame The frame to draw.
+         * @param colors The RGB value of the color of each species code.
          */
-        public void preparePaint()
+        public void drawFrame(Frame frame, int[] colors)
         {
-            if(! size.equals(getSize())) {  // if the size has changed...
-                size = getSize();
-                fieldImage = fieldView.createImage(size.width, size.height);
-                g = fieldImage.getGraphics();
-
-                xScale = size.width / gridWidth;
-                if(xScale < 1) {
-                    xScale = GRID_VIEW_SCALING_FACTOR;
+            frame.applyTo(cells);
+            int[] changed = frame.getCells();
+            if(changed == null || colors != drawnColors) {
+                for(int cell = 0; cell < cells.length; cell++) {
+                    pixels[cell] = colors[cells[cell] & 0xFF];
                 }
-                yScale = size.height / gridHeight;
-                if(yScale < 1) {
-                    yScale = GRID_VIEW_SCALING_FACTOR;
+                drawnColors = colors;
+            }
+            else {
+                for(int cell : changed) {
+                    pixels[cell] = colors[cells[cell] & 0xFF];
                 }
             }
         }
-        
-        /**
-         * Paint on grid location on this field in a given color.
-         */
-        public void drawMark(int x, int y, Color color)
-        {
-            g.setColor(color);
-            g.fillRect(x * xScale, y * yScale, xScale-1, yScale-1);
-        }
 
         /**
          * The field view component needs to be redisplayed. Copy the
-         * internal image to screen.
+         * internal image to screen, scaled to the size of the component.
          */
         public void paintComponent(Graphics g)
         {
-            if(fieldImage != null) {
-                Dimension currentSize = getSize();
-                if(size.equals(currentSize)) {
-                    g.drawImage(fieldImage, 0, 0, null);
-                }
-                else {
-                    // Rescale the previous image.
-                    g.drawImage(fieldImage, 0, 0, currentSize.width, currentSize.height, null);
-                }
-            }
+            super.paintComponent(g);
+            Graphics2D g2 = (Graphics2D) g;
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                                RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            g2.drawImage(fieldImage, 0, 0, getWidth(), getHeight(), null);
         }
     }
-}
\ No newline at end of file
+}
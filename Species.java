@@ -0,0 +1,173 @@
+import java.util.Arrays;
+
+/**
+ * A registry of the species living in the simulation.
+ * Each species is given a small integer code when it is registered,
+ * so that the field can store the species of its occupants in a
+ * compact array and species checks become a simple comparison.
+ * Code 0 is reserved for empty cells.
+ *
+ * The registry also holds the food web: the diet of each species is a
+ * bitset of species codes, so checking whether one species eats another
+ * is a single bit test. Bitsets have one bit per possible code, which
+ * allows food webs of more than 64 species.
+ *
+ * @author Aymen Berbache and Aleks
+ * @version 2022.02
+ */
+public final class Species
+{
+    // The code of an empty cell.
+    public static final int NONE = 0;
+    // The maximum number of species. Codes must fit in a byte.
+    public static final int MAX_SPECIES = 255;
+
+    // The class of each registered species, indexed by code.
+    private static volatile Class<?>[] types = new Class<?>[] { null };
+    // Whether each registered species is an animal, indexed by code.
+    private static volatile boolean[] animals = new boolean[] { false };
+    // The names of the species each registered species eats, indexed by code.
+    private static volatile String[][] preyNames = new String[][] { {} };
+    // The number of longs in the diet bitset of a species.
+    private static final int DIET_WORDS = (MAX_SPECIES + 64) / 64;
+    // The diet bitset of each species, DIET_WORDS longs per code.
+    private static volatile long[] diets = new long[DIET_WORDS];
+
+    /**
+     * The registry is not meant to be instantiated.
+     */
+    private Species()
+    {
+    }
+
+    /**
+     * Register a species and return its code. Registering a species
+     * that is already known returns its existing code.
+     * @param type The class of the species.
+     * @return The code of the species.
+     */
+    public static int register(Class<?> type)
+    {
+        return register(type, new String[0]);
+    }
+
+    /**
+     * Register a species with its diet and return its code.
+     * Preys may be registered before or after their predators.
+     * Registering a species that is already known returns its existing code.
+     * @param type The class of the species.
+     * @param preys The names of the species it eats.
+     * @return The code of the species.
+     */
+    public static synchronized int register(Class<?> type, String[] preys)
+    {
+        int code = codeOf(type);
+        if(code != NONE) {
+            return code;
+        }
+        code = types.length;
+        if(code > MAX_SPECIES) {
+            throw new IllegalStateException("Too many species: " + type.getName());
+        }
+        Class<?>[] newTypes = Arrays.copyOf(types, code + 1);
+        boolean[] newAnimals = Arrays.copyOf(animals, code + 1);
+        String[][] newPreyNames = Arrays.copyOf(preyNames, code + 1);
+        long[] newDiets = Arrays.copyOf(diets, (code + 1) * DIET_WORDS);
+        newTypes[code] = type;
+        newAnimals[code] = Animal.class.isAssignableFrom(type);
+        newPreyNames[code] = preys.clone();
+
+        // Link the new species with the species already registered,
+        // in both directions of the food web.
+        String name = type.getName();
+        for(int other = 1; other <= code; other++) {
+            if(Arrays.asList(preys).contains(newTypes[other].getName())) {
+                setBit(newDiets, code, other);
+            }
+            if(Arrays.asList(newPreyNames[other]).contains(name)) {
+                setBit(newDiets, other, code);
+            }
+        }
+
+        diets = newDiets;
+        preyNames = newPreyNames;
+        animals = newAnimals;
+        types = newTypes;
+        return code;
+    }
+
+    /**
+     * Record that a predator eats a prey in a table of diets.
+     * @param table The diet bitsets.
+     * @param predator The code of the predator.
+     * @param prey The code of the prey.
+     */
+    private static void setBit(long[] table, int predator, int prey)
+    {
+        table[predator * DIET_WORDS + (prey >>> 6)] |= 1L << prey;
+    }
+
+    /**
+     * Check whether a species is part of the diet of another.
+     * @param predator The code of the species that eats.
+     * @param prey The code of the species that may be eaten.
+     * @return true if the predator eats the prey.
+     */
+    public static boolean eats(int predator, int prey)
+    {
+        return (diets[predator * DIET_WORDS + (prey >>> 6)] & (1L << prey)) != 0;
+    }
+
+    /**
+     * Return the code of a species.
+     * @param type The class of the species.
+     * @return The code of the species, or NONE if it is not registered.
+     */
+    public static int codeOf(Class<?> type)
+    {
+        Class<?>[] known = types;
+        for(int code = 1; code < known.length; code++) {
+            if(known[code] == type) {
+                return code;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * @return The number of codes in use, including NONE. Arrays indexed
+     * by species code must be at least this long.
+     */
+    public static int count()
+    {
+        return types.length;
+    }
+
+    /**
+     * @param code The code of a species.
+     * @return The class of the species, or null for NONE.
+     */
+    public static Class<?> getType(int code)
+    {
+        return types[code];
+    }
+
+    /**
+     * @param code The code of a species.
+     * @return The name of the species.
+     */
+    public static String getName(int code)
+    {
+        Class<?> type = types[code];
+        return type == null ? "None" : type.getName();
+    }
+
+    /**
+     * @param code The code of a species.
+     * @return true if the species is an animal.
+     */
+    public static boolean isAnimal(int code)
+    {
+        return animals[code];
+    }
+}
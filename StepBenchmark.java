@@ -0,0 +1,264 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Measure the throughput and the latency of the steps of headless
+ * simulations, for several grid sizes, initial densities and scenarios.
+ * Each combination is warmed up, then every step is timed; the results
+ * are printed as JSON so that runs of two versions can be compared.
+ *
+ * Usage: java StepBenchmark [-sizes 180x115,1000x1000,4000x4000]
+ *        [-densities 0.5,1,2] [-scenarios default,dense-grass,predator-boom,near-extinction,grass-layer]
+ *        [-warmup 50] [-steps 200] [-threads 0] [-seed 1]
+ *
+ * The allocation rate is read from the allocated bytes of every live
+ * thread, and the garbage collection counts and times from the collector
+ * beans, so the figures cover parallel steps as well.
+ *
+ * @author Aymen Berbache and Aleks
+ * @version 2022.02
+ */
+public class StepBenchmark
+{
+    // The scenarios, by name: the parameters overridden on top of the density.
+    private static final Map<String, Parameters> SCENARIOS = createScenarios();
+
+    // The grid sizes, as {width, depth}.
+    private List<int[]> sizes;
+    // The factors applied to the creation probabilities.
+    private double[] densities;
+    // The names of the scenarios to run.
+    private List<String> scenarios;
+    // The number of steps run before measuring, and measured.
+    private int warmupSteps, measuredSteps;
+    // The number of threads updating the entities, zero for none.
+    private int threads;
+    // The seed of every simulation.
+    private long seed;
+
+    /**
+     * Create a benchmark with the default settings.
+     */
+    public StepBenchmark()
+    {
+        sizes = parseSizes("180x115,1000x1000,4000x4000");
+        densities = new double[] { 1.0 };
+        scenarios = new ArrayList<>(SCENARIOS.keySet());
+        warmupSteps = 50;
+        measuredSteps = 200;
+        threads = 0;
+        seed = 1;
+    }
+
+    /**
+     * @return The scenarios, by name.
+     */
+    private static Map<String, Parameters> createScenarios()
+    {
+        Map<String, Parameters> scenarios = new LinkedHashMap<>();
+        scenarios.put("default", Parameters.DEFAULTS);
+        scenarios.put("dense-grass", Parameters.DEFAULTS
+                .with("GRASS_CREATION_PROBABILITY", 0.6));
+        scenarios.put("predator-boom", Parameters.DEFAULTS
+                .with("LION_CREATION_PROBABILITY", 0.08)
+                .with("HUMAN_CREATION_PROBABILITY", 0.08)
+                .with("Lion.BREEDING_PROBABILITY", 0.9)
+                .with("Human.BREEDING_PROBABILITY", 0.9));
+        scenarios.put("near-extinction", Parameters.DEFAULTS
+                .with("ELEPHANT_CREATION_PROBABILITY", 0.001)
+                .with("ZEBRA_CREATION_PROBABILITY", 0.001)
+                .with("BUFFALO_CREATION_PROBABILITY", 0.001)
+                .with("LION_CREATION_PROBABILITY", 0.001)
+                .with("HUMAN_CREATION_PROBABILITY", 0.001));
+        scenarios.put("grass-layer", Parameters.DEFAULTS
+                .with(Parameters.GRASS_LAYER, 1));
+        scenarios.put("compact", Parameters.DEFAULTS
+                .with(Parameters.GRASS_LAYER, 1)
+                .with(Parameters.COMPACT_FIELD, 1));
+        return scenarios;
+    }
+
+    /**
+     * @param list Sizes of the form widthxdepth, separated by commas.
+     * @return The sizes, as {width, depth}.
+     */
+    private static List<int[]> parseSizes(String list)
+    {
+        List<int[]> sizes = new ArrayList<>();
+        for(String size : list.split(",")) {
+            String[] parts = size.split("x");
+            sizes.add(new int[] { Integer.parseInt(parts[0]), Integer.parseInt(parts[1]) });
+        }
+        return sizes;
+    }
+
+    /**
+     * Run every combination and print the results as JSON.
+     */
+    public void run()
+    {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"java\": \"").append(System.getProperty("java.version"))
+            .append("\",\n  \"processors\": ").append(Runtime.getRuntime().availableProcessors())
+            .append(",\n  \"maxHeap\": ").append(Runtime.getRuntime().maxMemory())
+            .append(",\n  \"results\": [");
+        String separator = "\n";
+        for(int[] size : sizes) {
+            for(double density : densities) {
+                for(String scenario : scenarios) {
+                    json.append(separator).append(measure(size[0], size[1], density, scenario));
+                    separator = ",\n";
+                }
+            }
+        }
+        json.append("\n  ]\n}");
+        System.out.println(json);
+    }
+
+    /**
+     * Measure one combination.
+     * @param width Width of the field.
+     * @param depth Depth of the field.
+     * @param density The factor applied to the creation probabilities.
+     * @param scenario The name of the scenario.
+     * @return The results, as a JSON object.
+     */
+    private String measure(int width, int depth, double density, String scenario)
+    {
+        Parameters base = SCENARIOS.get(scenario);
+        if(base == null) {
+            throw new IllegalArgumentException("Unknown scenario: " + scenario);
+        }
+        Parameters parameters = base.with(Parameters.CREATION_DENSITY, density);
+        Simulator simulator = new Simulator(depth, width, seed, parameters);
+        simulator.setParallelism(threads);
+        int initialEntities = simulator.getEntityCount();
+        for(int step = 0; step < warmupSteps; step++) {
+            simulator.simulateOneStep();
+        }
+
+        long[] times = new long[measuredSteps];
+        long updates = 0;
+        long allocatedBefore = allocatedBytes();
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTime();
+        long start = System.nanoTime();
+        for(int step = 0; step < measuredSteps; step++) {
+            updates += simulator.getEntityCount();
+            long stepStart = System.nanoTime();
+            simulator.simulateOneStep();
+            times[step] = System.nanoTime() - stepStart;
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        long gcCount = gcCount() - gcCountBefore;
+        long gcTime = gcTime() - gcTimeBefore;
+        int finalEntities = simulator.getEntityCount();
+        simulator.setParallelism(0);
+
+        Arrays.sort(times);
+        double seconds = elapsed / 1e9;
+        return String.format(Locale.ROOT,
+                "    {\"width\": %d, \"depth\": %d, \"density\": %s, \"scenario\": \"%s\", \"threads\": %d,"
+                + " \"warmupSteps\": %d, \"steps\": %d, \"initialEntities\": %d, \"finalEntities\": %d,"
+                + " \"stepsPerSecond\": %.2f, \"entityUpdatesPerSecond\": %.0f,"
+                + " \"meanNanos\": %d, \"p50Nanos\": %d, \"p90Nanos\": %d, \"p99Nanos\": %d, \"maxNanos\": %d,"
+                + " \"allocatedBytesPerStep\": %d, \"gcCount\": %d, \"gcMillis\": %d}",
+                width, depth, density, scenario, threads, warmupSteps, measuredSteps,
+                initialEntities, finalEntities, measuredSteps / seconds, updates / seconds,
+                elapsed / measuredSteps, percentile(times, 0.5), percentile(times, 0.9),
+                percentile(times, 0.99), times[times.length - 1],
+                allocated / measuredSteps, gcCount, gcTime);
+    }
+
+    /**
+     * @param sorted Values in ascending order.
+     * @param fraction The fraction of values at or below the percentile.
+     * @return The percentile, by the nearest rank method.
+     */
+    private static long percentile(long[] sorted, double fraction)
+    {
+        int rank = (int) Math.ceil(fraction * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * @return The number of bytes allocated so far by the live threads.
+     */
+    private static long allocatedBytes()
+    {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for(long bytes : bean.getThreadAllocatedBytes(bean.getAllThreadIds())) {
+            if(bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return The number of garbage collections so far.
+     */
+    private static long gcCount()
+    {
+        long count = 0;
+        for(GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * @return The time spent in garbage collection so far, in milliseconds.
+     */
+    private static long gcTime()
+    {
+        long time = 0;
+        for(GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, bean.getCollectionTime());
+        }
+        return time;
+    }
+
+    public static void main(String[] args)
+    {
+        StepBenchmark benchmark = new StepBenchmark();
+        for(int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch(args[i]) {
+                case "-sizes":
+                    benchmark.sizes = parseSizes(value);
+                    break;
+                case "-densities":
+                    benchmark.densities = Arrays.stream(value.split(",")).mapToDouble(Double::parseDouble).toArray();
+                    break;
+                case "-scenarios":
+                    benchmark.scenarios = Arrays.asList(value.split(","));
+                    break;
+                case "-warmup":
+                    benchmark.warmupSteps = Integer.parseInt(value);
+                    break;
+                case "-steps":
+                    benchmark.measuredSteps = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "-threads":
+                    benchmark.threads = Integer.parseInt(value);
+                    break;
+                case "-seed":
+                    benchmark.seed = Long.parseLong(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        benchmark.run();
+    }
+}
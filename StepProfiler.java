@@ -0,0 +1,258 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Measure where the time of a step goes. The duration of each phase of
+ * every step is added to a running total and kept in a ring of recent
+ * samples, from which percentiles are computed when they are read. Every
+ * few steps, the act phase is also timed entity by entity and added up
+ * by species. Recording a sample allocates nothing, so the profiler can
+ * stay on; it can be watched through JMX once registered.
+ *
+ * The phases are recorded by the thread running the simulation. Readings
+ * taken from another thread while it runs may lag by a step.
+ *
+ * @author Aymen Berbache and Aleks
+ * @version 2022.02
+ */
+public class StepProfiler implements StepProfilerMXBean
+{
+    /**
+     * The phases of a step.
+     */
+    public enum Phase
+    {
+        CLOCK, EXPIRE, ACT, REMOVE_DEAD, NEWBORNS, STATS, RENDER, STEP
+    }
+
+    // The number of recent samples kept for each phase.
+    private static final int WINDOW = 1024;
+    // The default number of steps between two steps timed entity by entity.
+    public static final int DEFAULT_SAMPLE_INTERVAL = 16;
+
+    // The number of phases.
+    private static final int PHASES = Phase.values().length;
+
+    // The total time and the number of samples of each phase.
+    private final long[] totalNanos;
+    private final long[] counts;
+    // The recent samples of each phase, WINDOW per phase.
+    private final long[] window;
+    // The last sample of each phase.
+    private final long[] last;
+    // The time spent acting and the number of acts of each species, by species code.
+    private final AtomicLongArray speciesNanos;
+    private final AtomicLongArray speciesCounts;
+    // The number of steps profiled.
+    private volatile long steps;
+    // The number of steps between two steps timed entity by entity, zero for none.
+    private volatile int sampleInterval = DEFAULT_SAMPLE_INTERVAL;
+    // Whether the entities are timed during the current step.
+    private volatile boolean sampling;
+
+    /**
+     * Create a profiler with nothing measured.
+     */
+    public StepProfiler()
+    {
+        totalNanos = new long[PHASES];
+        counts = new long[PHASES];
+        window = new long[PHASES * WINDOW];
+        last = new long[PHASES];
+        speciesNanos = new AtomicLongArray(Species.MAX_SPECIES + 1);
+        speciesCounts = new AtomicLongArray(Species.MAX_SPECIES + 1);
+    }
+
+    /**
+     * Register the profiler with the platform MBean server.
+     * @param name The name distinguishing this profiler from others.
+     * @return The name under which the profiler is registered.
+     * @throws JMException If the profiler cannot be registered.
+     */
+    public ObjectName register(String name) throws JMException
+    {
+        ObjectName objectName = new ObjectName("savanna:type=StepProfiler,name=" + ObjectName.quote(name));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if(server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+        server.registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Start profiling a step, and decide whether its entities are timed.
+     * @param step The number of the step.
+     */
+    public void beginStep(int step)
+    {
+        int interval = sampleInterval;
+        sampling = interval > 0 && step % interval == 0;
+        steps++;
+    }
+
+    /**
+     * @return true if the entities of the current step are to be timed.
+     */
+    public boolean isSampling()
+    {
+        return sampling;
+    }
+
+    /**
+     * Record the end of a phase.
+     * @param phase The phase that ended.
+     * @param start The time at which it started, from System.nanoTime.
+     * @return The current time, i.e. the start of the next phase.
+     */
+    public long record(Phase phase, long start)
+    {
+        long now = System.nanoTime();
+        int index = phase.ordinal();
+        long nanos = now - start;
+        window[index * WINDOW + (int) (counts[index] % WINDOW)] = nanos;
+        last[index] = nanos;
+        totalNanos[index] += nanos;
+        counts[index]++;
+        return now;
+    }
+
+    /**
+     * @param phase A phase of a step.
+     * @return The duration of the last run of the phase, in nanoseconds.
+     */
+    public long getLastNanos(Phase phase)
+    {
+        return last[phase.ordinal()];
+    }
+
+    /**
+     * Record the time an entity spent acting. Safe to call from
+     * several threads at once.
+     * @param species The species code of the entity.
+     * @param nanos The time it spent acting.
+     */
+    public void recordAct(int species, long nanos)
+    {
+        speciesNanos.addAndGet(species, nanos);
+        speciesCounts.incrementAndGet(species);
+    }
+
+    public long getSteps()
+    {
+        return steps;
+    }
+
+    public Map<String, Long> getPhaseTotalNanos()
+    {
+        return byPhase(totalNanos);
+    }
+
+    public Map<String, Long> getPhaseCounts()
+    {
+        return byPhase(counts);
+    }
+
+    public Map<String, Long> getPhaseP50Nanos()
+    {
+        return percentiles(0.5);
+    }
+
+    public Map<String, Long> getPhaseP90Nanos()
+    {
+        return percentiles(0.9);
+    }
+
+    public Map<String, Long> getPhaseP99Nanos()
+    {
+        return percentiles(0.99);
+    }
+
+    public Map<String, Long> getSpeciesActNanos()
+    {
+        return bySpecies(speciesNanos);
+    }
+
+    public Map<String, Long> getSpeciesActCounts()
+    {
+        return bySpecies(speciesCounts);
+    }
+
+    public int getSampleInterval()
+    {
+        return sampleInterval;
+    }
+
+    public void setSampleInterval(int interval)
+    {
+        sampleInterval = Math.max(0, interval);
+    }
+
+    public void reset()
+    {
+        Arrays.fill(totalNanos, 0);
+        Arrays.fill(counts, 0);
+        Arrays.fill(window, 0);
+        Arrays.fill(last, 0);
+        for(int code = 0; code < speciesNanos.length(); code++) {
+            speciesNanos.set(code, 0);
+            speciesCounts.set(code, 0);
+        }
+        steps = 0;
+    }
+
+    /**
+     * @param values A value per phase.
+     * @return The values, by phase name.
+     */
+    private static Map<String, Long> byPhase(long[] values)
+    {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for(Phase phase : Phase.values()) {
+            map.put(phase.name(), values[phase.ordinal()]);
+        }
+        return map;
+    }
+
+    /**
+     * @param values A value per species code.
+     * @return The values of the registered species, by species name.
+     */
+    private static Map<String, Long> bySpecies(AtomicLongArray values)
+    {
+        Map<String, Long> map = new LinkedHashMap<>();
+        int species = Species.count();
+        for(int code = 1; code < species; code++) {
+            map.put(Species.getName(code), values.get(code));
+        }
+        return map;
+    }
+
+    /**
+     * @param fraction The fraction of samples at or below the percentile.
+     * @return The percentile of the recent samples of each phase, by phase name.
+     */
+    private Map<String, Long> percentiles(double fraction)
+    {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for(Phase phase : Phase.values()) {
+            int index = phase.ordinal();
+            int size = (int) Math.min(counts[index], WINDOW);
+            long value = 0;
+            if(size > 0) {
+                long[] samples = Arrays.copyOfRange(window, index * WINDOW, index * WINDOW + size);
+                Arrays.sort(samples);
+                int rank = (int) Math.ceil(fraction * size);
+                value = samples[Math.max(0, rank - 1)];
+            }
+            map.put(phase.name(), value);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,70 @@
+import java.util.Map;
+
+/**
+ * The management interface of a StepProfiler, as seen through JMX,
+ * e.g. in JConsole under "savanna".
+ *
+ * @author Aymen Berbache and Aleks
+ * @version 2022.02
+ */
+public interface StepProfilerMXBean
+{
+    /**
+     * @return The number of steps profiled.
+     */
+    long getSteps();
+
+    /**
+     * @return The total time spent in each phase, in nanoseconds, by phase name.
+     */
+    Map<String, Long> getPhaseTotalNanos();
+
+    /**
+     * @return The number of times each phase ran, by phase name.
+     */
+    Map<String, Long> getPhaseCounts();
+
+    /**
+     * @return The median duration of each phase over the recent steps, in nanoseconds.
+     */
+    Map<String, Long> getPhaseP50Nanos();
+
+    /**
+     * @return The 90th percentile of the duration of each phase over the recent steps.
+     */
+    Map<String, Long> getPhaseP90Nanos();
+
+    /**
+     * @return The 99th percentile of the duration of each phase over the recent steps.
+     */
+    Map<String, Long> getPhaseP99Nanos();
+
+    /**
+     * @return The total time spent acting by the entities of each species, on
+     * the sampled steps, in nanoseconds, by species name.
+     */
+    Map<String, Long> getSpeciesActNanos();
+
+    /**
+     * @return The number of times the entities of each species acted, on
+     * the sampled steps, by species name.
+     */
+    Map<String, Long> getSpeciesActCounts();
+
+    /**
+     * @return The number of steps between two steps whose act phase is
+     * timed entity by entity.
+     */
+    int getSampleInterval();
+
+    /**
+     * @param interval The number of steps between two steps whose act phase
+     *                 is timed entity by entity; zero to turn it off.
+     */
+    void setSampleInterval(int interval);
+
+    /**
+     * Forget everything measured so far.
+     */
+    void reset();
+}
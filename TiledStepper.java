@@ -0,0 +1,265 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.random.RandomGenerator;
+
+/**
+ * Run the entity phase of a step on several threads.
+ *
+ * The field is split into square tiles, coloured like a checkerboard
+ * with four colours so that two tiles of the same colour are always at
+ * least one whole tile apart. An entity only looks at and changes the
+ * cells next to it, so the entities of tiles of the same colour never
+ * interfere and those tiles are updated concurrently, one colour after
+ * the other.
+ *
+ * Each tile draws its random numbers from its own stream, keyed by the
+ * seed, the step and the tile only. With a given seed the result of a
+ * step is therefore the same whatever the number of threads.
+ *
+ * The changes each tile makes to the populations and to the changed
+ * cells of the field are tallied by tile, as are the slots it gives and
+ * releases in the AnimalTable and the deaths and witherings it
+ * schedules. They are merged into the simulation once the tiles of a
+ * colour are done, so that no tile waits for another.
+ *
+ * @author Aymen Berbache and Aleks
+ * @version 2022.02
+ */
+public class TiledStepper
+{
+    // The default width and depth of a tile.
+    public static final int DEFAULT_TILE_SIZE = 32;
+    // The number of colours of the checkerboard.
+    private static final int COLOURS = 4;
+
+    // The field being updated.
+    private final Field field;
+    // The width and depth of a tile.
+    private final int tileSize;
+    // The number of tiles in a column and in a row of tiles.
+    private final int tileRows, tileCols;
+    // The entities of each tile, in the order in which they act.
+    private final EntityStore[] tiles;
+    // The changes each tile makes to the field.
+    private final Field.Tally[] tallies;
+    // The slots each tile gives and releases in the animal table.
+    private final AnimalTable.Reserve[] reserves;
+    // The deaths and the witherings each tile schedules.
+    private final TimerWheel.Batch[] deaths, witherings;
+    // The indices of the tiles of each colour.
+    private final int[][] tilesByColour;
+    // The seed from which the stream of each tile is derived.
+    private final long seed;
+    // The threads updating the tiles.
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a stepper for the given field.
+     * @param field The field to update.
+     * @param threads The number of threads to use.
+     * @param seed The seed from which the random generators are derived.
+     */
+    public TiledStepper(Field field, int threads, long seed)
+    {
+        this(field, threads, seed, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Create a stepper for the given field.
+     * @param field The field to update.
+     * @param threads The number of threads to use.
+     * @param seed The seed from which the random generators are derived.
+     * @param tileSize The width and depth of a tile, at least 2, and more
+     * than OccupantTable.BLOCK_SIZE for a compact field.
+     */
+    public TiledStepper(Field field, int threads, long seed, int tileSize)
+    {
+        if(tileSize < 2) {
+            throw new IllegalArgumentException("Tiles must be at least 2 cells wide.");
+        }
+        if(field.isCompact() && tileSize <= OccupantTable.BLOCK_SIZE) {
+            // Tiles updated concurrently must not reach the same block of occupants.
+            throw new IllegalArgumentException("Tiles of a compact field must be more than "
+                    + OccupantTable.BLOCK_SIZE + " cells wide.");
+        }
+        this.field = field;
+        this.seed = seed;
+        this.tileSize = tileSize;
+        tileRows = (field.getDepth() + tileSize - 1) / tileSize;
+        tileCols = (field.getWidth() + tileSize - 1) / tileSize;
+        tiles = new EntityStore[tileRows * tileCols];
+        tallies = new Field.Tally[tiles.length];
+        reserves = new AnimalTable.Reserve[tiles.length];
+        deaths = new TimerWheel.Batch[tiles.length];
+        witherings = new TimerWheel.Batch[tiles.length];
+        for(int tile = 0; tile < tiles.length; tile++) {
+            tiles[tile] = new EntityStore();
+            tallies[tile] = new Field.Tally();
+            reserves[tile] = new AnimalTable.Reserve();
+            deaths[tile] = new TimerWheel.Batch();
+            witherings[tile] = new TimerWheel.Batch();
+        }
+
+        // Group the tiles by colour.
+        int[] counts = new int[COLOURS];
+        for(int tile = 0; tile < tiles.length; tile++) {
+            counts[colourOf(tile)]++;
+        }
+        tilesByColour = new int[COLOURS][];
+        for(int colour = 0; colour < COLOURS; colour++) {
+            tilesByColour[colour] = new int[counts[colour]];
+            counts[colour] = 0;
+        }
+        for(int tile = 0; tile < tiles.length; tile++) {
+            int colour = colourOf(tile);
+            tilesByColour[colour][counts[colour]++] = tile;
+        }
+
+        pool = new ForkJoinPool(Math.max(1, threads));
+    }
+
+    /**
+     * Let all the entities of the store act for one step, then remove the
+     * dead ones and add the newborns. Survivors are kept in tile order,
+     * followed by the newborns of each tile.
+     * @param entities The entities of the simulation.
+     * @param step The number of the step.
+     * @param profiler Records the time of each phase.
+     * @return The number of entities born during the step.
+     */
+    public int step(EntityStore entities, int step, StepProfiler profiler)
+    {
+        long time = System.nanoTime();
+        // Sort the entities into the tile where they start the step.
+        for(int i = 0; i < entities.size(); i++) {
+            Entity entity = entities.get(i);
+            if(entity.isAlive()) {
+                tiles[tileOf(entity.getCell())].add(entity);
+            }
+        }
+        entities.clear();
+
+        SimulationContext context = field.getContext();
+        field.setTallying(true);
+        try {
+            for(int colour = 0; colour < COLOURS; colour++) {
+                int[] group = tilesByColour[colour];
+                if(group.length > 0) {
+                    pool.invoke(new TileTask(group, 0, group.length, step, profiler));
+                    for(int tile : group) {
+                        field.merge(tallies[tile]);
+                        context.getAnimals().merge(reserves[tile]);
+                        context.getDeaths().merge(deaths[tile]);
+                        context.getWitherings().merge(witherings[tile]);
+                    }
+                }
+            }
+        }
+        finally {
+            field.setTallying(false);
+        }
+        time = profiler.record(StepProfiler.Phase.ACT, time);
+
+        for(EntityStore tile : tiles) {
+            tile.removeDead();
+            tile.transferTo(entities);
+        }
+        time = profiler.record(StepProfiler.Phase.REMOVE_DEAD, time);
+        int births = 0;
+        for(EntityStore tile : tiles) {
+            births += tile.transferNewbornsTo(entities);
+        }
+        profiler.record(StepProfiler.Phase.NEWBORNS, time);
+        return births;
+    }
+
+    /**
+     * Stop the threads of the stepper.
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * @param cell The index of a cell.
+     * @return The index of the tile containing the cell.
+     */
+    private int tileOf(int cell)
+    {
+        int row = cell / field.getWidth();
+        int col = cell - row * field.getWidth();
+        return (row / tileSize) * tileCols + col / tileSize;
+    }
+
+    /**
+     * @param tile The index of a tile.
+     * @return The colour of the tile, from 0 to COLOURS - 1.
+     */
+    private int colourOf(int tile)
+    {
+        return (tile / tileCols % 2) * 2 + tile % tileCols % 2;
+    }
+
+    /**
+     * Update a range of tiles of the same colour, splitting the range
+     * between threads.
+     */
+    private class TileTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        // The tiles of the colour being updated.
+        private final int[] group;
+        // The range of tiles of this task, from first to last exclusive.
+        private final int first, last;
+        // The number of the step.
+        private final int step;
+        // Times the entities on sampled steps.
+        private final StepProfiler profiler;
+
+        /**
+         * @param group The tiles of the colour being updated.
+         * @param first The first tile of the range.
+         * @param last The end of the range, exclusive.
+         * @param step The number of the step.
+         * @param profiler Times the entities on sampled steps.
+         */
+        public TileTask(int[] group, int first, int last, int step, StepProfiler profiler)
+        {
+            this.group = group;
+            this.first = first;
+            this.last = last;
+            this.step = step;
+            this.profiler = profiler;
+        }
+
+        protected void compute()
+        {
+            if(last - first > 1) {
+                int middle = (first + last) >>> 1;
+                invokeAll(new TileTask(group, first, middle, step, profiler),
+                          new TileTask(group, middle, last, step, profiler));
+            }
+            else {
+                int tile = group[first];
+                RandomGenerator previous = Randomizer.bind(Randomizer.stream(seed, step, tile));
+                SimulationContext context = field.getContext();
+                Field.Tally previousTally = field.bindTally(tallies[tile]);
+                AnimalTable.Reserve previousReserve = context.getAnimals().bindReserve(reserves[tile]);
+                TimerWheel.Batch previousDeaths = context.getDeaths().bindBatch(deaths[tile]);
+                TimerWheel.Batch previousWitherings = context.getWitherings().bindBatch(witherings[tile]);
+                try {
+                    tiles[tile].actAll(profiler);
+                }
+                finally {
+                    context.getWitherings().bindBatch(previousWitherings);
+                    context.getDeaths().bindBatch(previousDeaths);
+                    context.getAnimals().bindReserve(previousReserve);
+                    field.bindTally(previousTally);
+                    Randomizer.bind(previous);
+                }
+            }
+        }
+    }
+}
@@ -6,7 +6,7 @@
  */
 public class Time {
     // A boolean  that holds the current state of time.
-    private static boolean isDay = false;
+    private boolean isDay = false;
 
     public Time()
     {
@@ -0,0 +1,290 @@
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timer wheel: items are scheduled to expire at a tick,
+ * and expire all at once when the wheel is advanced past that tick.
+ * Scheduling an item and expiring it take constant time, so advancing
+ * the wheel only costs as much as the items expiring.
+ *
+ * The wheel has LEVELS levels of SLOTS slots. An item due within SLOTS
+ * ticks goes in the slot of its tick on the first level; an item due
+ * later goes on a higher level, in a slot covering SLOTS times as many
+ * ticks as a slot of the level below, and is moved down a level each
+ * time the wheel reaches the start of that slot. Items beyond the last
+ * level wait in an overflow list.
+ *
+ * Items cannot be cancelled: an item whose time changed is scheduled
+ * again, and the expiry of its earlier entry must be ignored by the
+ * caller.
+ *
+ * The wheel is not safe for concurrent use. The threads acting for the
+ * tiles of a TiledStepper each have a batch bound to them, holding the
+ * items they schedule until the batch is merged into the wheel.
+ *
+ * @author Aymen Berbache and Aleks
+ * @version 2022.02
+ */
+public class TimerWheel<T>
+{
+    // The number of bits of a tick covered by each level.
+    private static final int BITS = 6;
+    // The number of slots of each level.
+    private static final int SLOTS = 1 << BITS;
+    // The number of levels.
+    private static final int LEVELS = 4;
+    // The initial capacity of a slot.
+    private static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * The items scheduled by one thread while the entities of a tile act,
+     * and their ticks. A batch is merged into the wheel once the thread is
+     * done.
+     */
+    public static class Batch
+    {
+        // The items scheduled, and their ticks.
+        private Object[] items = new Object[INITIAL_CAPACITY];
+        private long[] ticks = new long[INITIAL_CAPACITY];
+        // The number of items scheduled.
+        private int count;
+    }
+
+    // The items of each slot, by level then slot.
+    private final Object[][][] slots;
+    // The ticks at which the items of each slot are due, by level then slot.
+    private final long[][][] ticks;
+    // The number of items in each slot, by level then slot.
+    private final int[][] sizes;
+    // The items due beyond the last level, and their ticks.
+    private Object[] overflow;
+    private long[] overflowTicks;
+    // The number of items due beyond the last level.
+    private int overflowSize;
+    // The last tick the wheel was advanced to.
+    private long now;
+    // The number of items scheduled, including those to be ignored.
+    private int size;
+    // The batch bound to each thread.
+    private final ThreadLocal<Batch> batches = new ThreadLocal<>();
+
+    /**
+     * Create an empty wheel at tick zero.
+     */
+    public TimerWheel()
+    {
+        slots = new Object[LEVELS][SLOTS][];
+        ticks = new long[LEVELS][SLOTS][];
+        sizes = new int[LEVELS][SLOTS];
+        overflow = new Object[INITIAL_CAPACITY];
+        overflowTicks = new long[INITIAL_CAPACITY];
+        clear();
+    }
+
+    /**
+     * Remove every item and set the wheel back to tick zero.
+     */
+    public void clear()
+    {
+        for(int level = 0; level < LEVELS; level++) {
+            for(int slot = 0; slot < SLOTS; slot++) {
+                if(sizes[level][slot] > 0) {
+                    Arrays.fill(slots[level][slot], 0, sizes[level][slot], null);
+                    sizes[level][slot] = 0;
+                }
+            }
+        }
+        Arrays.fill(overflow, 0, overflowSize, null);
+        overflowSize = 0;
+        now = 0;
+        size = 0;
+    }
+
+    /**
+     * @return The last tick the wheel was advanced to.
+     */
+    public long getNow()
+    {
+        return now;
+    }
+
+    /**
+     * @return The number of items scheduled and not yet expired.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Schedule an item to expire at the given tick. An item due at or
+     * before the current tick expires at the next one. The item is held
+     * in the batch bound to the current thread, if there is one.
+     * @param item The item to schedule.
+     * @param tick The tick at which it expires.
+     */
+    public void schedule(T item, long tick)
+    {
+        Batch batch = batches.get();
+        if(batch == null) {
+            insert(item, Math.max(tick, now + 1));
+            size++;
+        }
+        else {
+            if(batch.count == batch.items.length) {
+                batch.items = Arrays.copyOf(batch.items, batch.count * 2);
+                batch.ticks = Arrays.copyOf(batch.ticks, batch.count * 2);
+            }
+            batch.items[batch.count] = item;
+            batch.ticks[batch.count++] = tick;
+        }
+    }
+
+    /**
+     * Bind a batch to the current thread, to hold the items it schedules.
+     * @param batch The batch to bind, or null to unbind.
+     * @return The batch previously bound, or null if there was none.
+     */
+    public Batch bindBatch(Batch batch)
+    {
+        Batch previous = batches.get();
+        if(batch == null) {
+            batches.remove();
+        }
+        else {
+            batches.set(batch);
+        }
+        return previous;
+    }
+
+    /**
+     * Schedule the items of a batch, in the order they were added to it,
+     * and empty the batch. Must not be called concurrently.
+     * @param batch The batch to merge.
+     */
+    @SuppressWarnings("unchecked")
+    public void merge(Batch batch)
+    {
+        for(int i = 0; i < batch.count; i++) {
+            insert((T) batch.items[i], Math.max(batch.ticks[i], now + 1));
+            batch.items[i] = null;
+        }
+        size += batch.count;
+        batch.count = 0;
+    }
+
+    /**
+     * Advance the wheel tick by tick up to the given tick, expiring every
+     * item due on the way, in no particular order within a tick.
+     * @param tick The tick to advance to.
+     * @param expire Receives each item expiring.
+     */
+    @SuppressWarnings("unchecked")
+    public void advanceTo(long tick, Consumer<? super T> expire)
+    {
+        while(now < tick) {
+            now++;
+            cascade();
+            int slot = (int) (now & (SLOTS - 1));
+            int count = sizes[0][slot];
+            if(count > 0) {
+                Object[] items = slots[0][slot];
+                sizes[0][slot] = 0;
+                size -= count;
+                for(int i = 0; i < count; i++) {
+                    T item = (T) items[i];
+                    items[i] = null;
+                    expire.accept(item);
+                }
+            }
+        }
+    }
+
+    /**
+     * Move the items of the higher levels whose slot starts at the
+     * current tick down to the levels below.
+     */
+    @SuppressWarnings("unchecked")
+    private void cascade()
+    {
+        // Find the highest level whose slot starts at the current tick.
+        int level = 0;
+        while(level + 1 < LEVELS && (now & ((1L << (BITS * (level + 1))) - 1)) == 0) {
+            level++;
+        }
+        if(level + 1 == LEVELS && (now & ((1L << (BITS * LEVELS)) - 1)) == 0 && overflowSize > 0) {
+            Object[] items = overflow;
+            long[] due = overflowTicks;
+            int count = overflowSize;
+            overflow = new Object[items.length];
+            overflowTicks = new long[items.length];
+            overflowSize = 0;
+            for(int i = 0; i < count; i++) {
+                insert((T) items[i], due[i]);
+            }
+        }
+        // Empty the higher levels first, so that their items can cascade further.
+        for(; level > 0; level--) {
+            int slot = (int) ((now >>> (BITS * level)) & (SLOTS - 1));
+            int count = sizes[level][slot];
+            if(count > 0) {
+                Object[] items = slots[level][slot];
+                long[] due = ticks[level][slot];
+                sizes[level][slot] = 0;
+                for(int i = 0; i < count; i++) {
+                    T item = (T) items[i];
+                    items[i] = null;
+                    insert(item, due[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Put an item in the slot of its tick, on the lowest level whose
+     * current revolution covers that tick.
+     * @param item The item.
+     * @param tick Its tick, after the current one.
+     */
+    private void insert(T item, long tick)
+    {
+        for(int level = 0; level < LEVELS; level++) {
+            int shift = BITS * (level + 1);
+            if((tick >>> shift) == (now >>> shift)) {
+                int slot = (int) ((tick >>> (BITS * level)) & (SLOTS - 1));
+                add(level, slot, item, tick);
+                return;
+            }
+        }
+        if(overflowSize == overflow.length) {
+            overflow = Arrays.copyOf(overflow, overflowSize * 2);
+            overflowTicks = Arrays.copyOf(overflowTicks, overflowSize * 2);
+        }
+        overflow[overflowSize] = item;
+        overflowTicks[overflowSize++] = tick;
+    }
+
+    /**
+     * Add an item at the end of a slot.
+     * @param level The level of the slot.
+     * @param slot The index of the slot in its level.
+     * @param item The item.
+     * @param tick Its tick.
+     */
+    private void add(int level, int slot, T item, long tick)
+    {
+        int count = sizes[level][slot];
+        Object[] items = slots[level][slot];
+        if(items == null) {
+            items = slots[level][slot] = new Object[INITIAL_CAPACITY];
+            ticks[level][slot] = new long[INITIAL_CAPACITY];
+        }
+        else if(count == items.length) {
+            items = slots[level][slot] = Arrays.copyOf(items, count * 2);
+            ticks[level][slot] = Arrays.copyOf(ticks[level][slot], count * 2);
+        }
+        items[count] = item;
+        ticks[level][slot][count] = tick;
+        sizes[level][slot] = count + 1;
+    }
+}
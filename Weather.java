@@ -1,4 +1,4 @@
-import java.util.*;
+import java.util.random.RandomGenerator;
 /**
  * A class that adds weather to the simulation.
  * There are 3 types of weather conditions: rain, fog and
@@ -11,9 +11,15 @@ public class Weather {
     private boolean wind;
     private boolean rain;
     private boolean fog;
-    private static final Random rand = Randomizer.getRandom();
+    // The simulation whose random generator drives the weather.
+    private final SimulationContext context;
 
-    public Weather() {
+    /**
+     * Create the weather of a simulation, in a random state.
+     * @param context The simulation the weather belongs to.
+     */
+    public Weather(SimulationContext context) {
+        this.context = context;
         weatherUpdate();
     }
 
@@ -21,6 +27,7 @@ public class Weather {
      * Choose randomly the weather state.
      */
     public void weatherUpdate() {
+        RandomGenerator rand = context.getRandom();
         rain =  rand.nextBoolean();
         fog  = rand.nextBoolean();
         wind =  rand.nextBoolean();
@@ -1,5 +1,3 @@
-import java.util.Random;
-
 /**
  * A simple model of a zebra.
  * Zebras age, move, breed, eat, and die.
@@ -25,10 +23,10 @@ public class Zebra extends Prey
     private static final int MAX_FOOD_LEVEL = 30;
     //A list of species that are part of the zebra's diet.
     private static final String[] preys = {"Grass"};
-    // A shared random number generator to control breeding.
-    private static final Random rand = Randomizer.getRandom();
     // The infection probability of the animal.
     private static final double DISEASE_INFECTION_RATE = 0.001;
+    // The species code of the zebra.
+    private static final int SPECIES = Species.register(Zebra.class, preys);
 
     /**
      * Create a new zebra. A zebra may be created with age
@@ -43,11 +41,11 @@ public class Zebra extends Prey
         super(field, location);
         if(randomAge) {
             // We assume the simulation starts with a relatively young population
-            age = rand.nextInt(MAX_AGE/2);
+            setAge(getContext().getRandom().nextInt(MAX_AGE/2));
             // food level initialized by Animal constructor
         }else{
-            // age =  0;  Implied by Entity constructor
-            foodLevel = 15;  //Initial food level of a newborn
+            // age =  0;  Implied by the AnimalTable
+            setFoodLevel(15);  //Initial food level of a newborn
         }
     }
 
@@ -123,4 +121,12 @@ public class Zebra extends Prey
     protected double getDISEASE_INFECTION_RATE(){
         return DISEASE_INFECTION_RATE;
     }
+
+    /**
+     * @return The zebra species code
+     */
+    protected int getSPECIES()
+    {
+        return SPECIES;
+    }
 }